@@ -77,9 +77,11 @@ class AutomergeChangeAction
     mdsMergeInput.changeNumber = change.getId().get();
     mdsMergeInput.patchsetNumber = rev.getPatchSet().number();
     mdsMergeInput.project = change.getProject().get();
+    mdsMergeInput.branch = change.getDest().shortName();
     mdsMergeInput.topic = dsCreator.getOrSetTopic(change.getId().get(), change.getTopic(), config.getContextUserId());
     mdsMergeInput.subject = change.getSubject();
     mdsMergeInput.obsoleteRevision = revision;
+    mdsMergeInput.obsoletePatchsetNumber = rev.getPatchSet().number();
     mdsMergeInput.currentRevision = revision;
 
     logger.atFine().log("Multiple downstream merge input: %s", mdsMergeInput.dsBranchMap);
@@ -0,0 +1,141 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.automerger;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.extensions.restapi.RestApiException;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AutomergerCaches gives administrators control over the caches of the plugin, so that each of
+ * them can be inspected, flushed or warmed without reloading the plugin.
+ *
+ * <p>Only commit_topics can be warmed, from the open changes on the server. The other caches
+ * record what automerger did in response to events, and are filled again as events arrive.
+ */
+@Singleton
+public class AutomergerCaches {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  private final CommitTopicCache commitTopicCache;
+  private final ImmutableMap<String, Cache<?, ?>> caches;
+
+  @Inject
+  public AutomergerCaches(
+      CommitTopicCache commitTopicCache,
+      @Named(CascadeTracker.CACHE_NAME) Cache<Integer, CascadeTracker.Hop> cascades,
+      @Named(CommitTopicCache.CACHE_NAME) Cache<String, CommitTopicCache.CommitTopic> commitTopics,
+      @Named(DownstreamIndex.CACHE_NAME) Cache<String, Integer> downstreamIndex,
+      @Named(DownstreamVerdicts.CACHE_NAME)
+          Cache<String, DownstreamVerdicts.Verdict> downstreamVerdicts,
+      @Named(ConflictMemo.CACHE_NAME) Cache<String, String> mergeConflicts) {
+    this.commitTopicCache = commitTopicCache;
+    this.caches =
+        ImmutableMap.of(
+            CascadeTracker.CACHE_NAME, cascades,
+            CommitTopicCache.CACHE_NAME, commitTopics,
+            DownstreamIndex.CACHE_NAME, downstreamIndex,
+            DownstreamVerdicts.CACHE_NAME, downstreamVerdicts,
+            ConflictMemo.CACHE_NAME, mergeConflicts);
+  }
+
+  /** Returns the names of the caches. */
+  public Set<String> getNames() {
+    return caches.keySet();
+  }
+
+  /**
+   * Get the statistics of the given caches.
+   *
+   * @param names Names of the caches, or empty for all caches.
+   * @return The statistics of each cache.
+   * @throws IllegalArgumentException if a cache does not exist.
+   */
+  public List<CacheInfo> getStats(List<String> names) {
+    List<CacheInfo> stats = new ArrayList<>();
+    for (String name : resolve(names)) {
+      stats.add(new CacheInfo(name, caches.get(name)));
+    }
+    return stats;
+  }
+
+  /**
+   * Drop all entries of the given caches.
+   *
+   * @param names Names of the caches, or empty for all caches.
+   * @return The names of the flushed caches.
+   * @throws IllegalArgumentException if a cache does not exist.
+   */
+  public List<String> flush(List<String> names) {
+    List<String> flushed = resolve(names);
+    for (String name : flushed) {
+      logger.atInfo().log("Flushing cache %s", name);
+      caches.get(name).invalidateAll();
+    }
+    return flushed;
+  }
+
+  /**
+   * Fill commit_topics with the current revisions of open changes.
+   *
+   * @param limit Maximum number of changes to fetch.
+   * @return The number of changes fetched.
+   * @throws RestApiException
+   */
+  public int warm(int limit) throws RestApiException {
+    int changes = commitTopicCache.warm(limit);
+    logger.atInfo().log("Warmed cache %s with %s changes", CommitTopicCache.CACHE_NAME, changes);
+    return changes;
+  }
+
+  private List<String> resolve(List<String> names) {
+    if (names == null || names.isEmpty()) {
+      return new ArrayList<>(caches.keySet());
+    }
+    for (String name : names) {
+      if (!caches.containsKey(name)) {
+        throw new IllegalArgumentException("No cache " + name + ", caches are " + getNames());
+      }
+    }
+    return names;
+  }
+
+  /** Statistics of one cache. */
+  public static class CacheInfo {
+    public String name;
+    public long entries;
+    public double hitRate;
+    public long averageLoadMillis;
+    public long evictions;
+
+    CacheInfo(String name, Cache<?, ?> cache) {
+      CacheStats stats = cache.stats();
+      this.name = name;
+      this.entries = cache.size();
+      this.hitRate = stats.hitRate();
+      this.averageLoadMillis = TimeUnit.NANOSECONDS.toMillis((long) stats.averageLoadPenalty());
+      this.evictions = stats.evictionCount();
+    }
+  }
+}
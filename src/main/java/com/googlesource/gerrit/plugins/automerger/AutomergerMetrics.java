@@ -0,0 +1,138 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.automerger;
+
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Counter1;
+import com.google.gerrit.metrics.Counter2;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Description.Units;
+import com.google.gerrit.metrics.Field;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer0;
+import com.google.gerrit.metrics.Timer1;
+import com.google.gerrit.server.logging.Metadata;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/** Metrics reported by the automerger plugin. */
+@Singleton
+public class AutomergerMetrics {
+  final Timer0 mergeValidationLatency;
+  final Counter0 mergeValidationTimeouts;
+  final Timer1<String> cascadeHopLatency;
+  final Timer1<String> cascadeLatency;
+  final Timer1<String> listenerLatency;
+  final Timer1<String> listenerQueueWait;
+  final Timer1<String> gerritApiLatency;
+  final Timer0 configResolutionLatency;
+  final Counter2<String, String> mergeResults;
+  final Counter1<String> requestContexts;
+
+  @Inject
+  AutomergerMetrics(MetricMaker metricMaker) {
+    mergeValidationLatency =
+        metricMaker.newTimer(
+            "merge_validation/latency",
+            new Description("Time spent checking downstream changes on submit")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS));
+    mergeValidationTimeouts =
+        metricMaker.newCounter(
+            "merge_validation/timeout_count",
+            new Description("Submits whose downstream check ran out of time")
+                .setRate()
+                .setUnit("timeouts"));
+    cascadeHopLatency =
+        metricMaker.newTimer(
+            "cascade/hop_latency",
+            new Description(
+                    "Time from a patch set until automerger created or updated its downstream"
+                        + " change")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS),
+            branchPairField());
+    cascadeLatency =
+        metricMaker.newTimer(
+            "cascade/latency",
+            new Description(
+                    "Time from the start of a cascade until each of its downstream changes exists")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS),
+            branchPairField());
+    listenerLatency =
+        metricMaker.newTimer(
+            "listener/latency",
+            new Description("Time spent handling an event")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS),
+            eventTypeField());
+    listenerQueueWait =
+        metricMaker.newTimer(
+            "listener/queue_wait",
+            new Description("Time an event waited before it was handled")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS),
+            eventTypeField());
+    gerritApiLatency =
+        metricMaker.newTimer(
+            "gerrit_api/latency",
+            new Description("Time spent in Gerrit API calls that write downstream changes")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS),
+            Field.ofString("operation", Metadata.Builder::operationName)
+                .description("The API operation.")
+                .build());
+    configResolutionLatency =
+        metricMaker.newTimer(
+            "config/resolution_latency",
+            new Description(
+                    "Time spent resolving the downstream branches of a change from the config and"
+                        + " the manifest")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS));
+    mergeResults =
+        metricMaker.newCounter(
+            "merge/result_count",
+            new Description("Downstream merges and cherry-picks by result")
+                .setRate()
+                .setUnit("merges"),
+            branchPairField(),
+            Field.ofString("result", Metadata.Builder::operationName)
+                .description("One of success, conflict or skip.")
+                .build());
+    requestContexts =
+        metricMaker.newCounter(
+            "request_context/count",
+            new Description("Request contexts needed by automerger tasks")
+                .setRate()
+                .setUnit("contexts"),
+            Field.ofString("outcome", Metadata.Builder::operationName)
+                .description("Whether the context was opened or the one of the task was reused.")
+                .build());
+  }
+
+  private static Field<String> eventTypeField() {
+    return Field.ofString("event_type", Metadata.Builder::eventType)
+        .description("The type of the event.")
+        .build();
+  }
+
+  private static Field<String> branchPairField() {
+    return Field.ofString("branch_pair", Metadata.Builder::branchName)
+        .description("Upstream and downstream branch, separated by a colon.")
+        .build();
+  }
+}
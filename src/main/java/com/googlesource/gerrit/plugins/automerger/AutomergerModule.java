@@ -18,16 +18,21 @@ import static com.google.gerrit.server.change.RevisionResource.REVISION_KIND;
 import static com.google.gerrit.server.config.ConfigResource.CONFIG_KIND;
 import static com.google.gerrit.server.project.BranchResource.BRANCH_KIND;
 
+import com.google.gerrit.extensions.annotations.Exports;
 import com.google.gerrit.extensions.events.ChangeAbandonedListener;
+import com.google.gerrit.extensions.events.ChangeMergedListener;
 import com.google.gerrit.extensions.events.ChangeRestoredListener;
 import com.google.gerrit.extensions.events.CommentAddedListener;
+import com.google.gerrit.extensions.events.GitReferenceUpdatedListener;
 import com.google.gerrit.extensions.events.RevisionCreatedListener;
 import com.google.gerrit.extensions.events.TopicEditedListener;
 import com.google.gerrit.extensions.registration.DynamicSet;
 import com.google.gerrit.extensions.restapi.RestApiModule;
 import com.google.gerrit.extensions.webui.JavaScriptPlugin;
 import com.google.gerrit.extensions.webui.WebUiPlugin;
+import com.google.gerrit.lifecycle.LifecycleModule;
 import com.google.gerrit.server.git.validators.MergeValidationListener;
+import com.google.gerrit.server.rules.SubmitRule;
 import com.google.inject.AbstractModule;
 
 /** Module to bind listeners, plugins, and other modules. */
@@ -41,7 +46,25 @@ public class AutomergerModule extends AbstractModule {
     DynamicSet.bind(binder(), RevisionCreatedListener.class).to(DownstreamCreator.class);
     DynamicSet.bind(binder(), TopicEditedListener.class).to(DownstreamCreator.class);
     DynamicSet.bind(binder(), MergeValidationListener.class).to(MergeValidator.class);
+    DynamicSet.bind(binder(), ChangeMergedListener.class).to(DownstreamVerdicts.class);
+    DynamicSet.bind(binder(), ChangeMergedListener.class).to(MergeValidator.class);
+    DynamicSet.bind(binder(), GitReferenceUpdatedListener.class).to(DownstreamVerdicts.class);
+    bind(SubmitRule.class)
+        .annotatedWith(Exports.named("DownstreamsSubmitRule"))
+        .to(DownstreamsSubmitRule.class);
     bind(ChangeCreatorApi.class).toProvider(ChangeCreatorProvider.class);
+    install(DownstreamIndex.module());
+    install(CommitTopicCache.module());
+    install(DownstreamVerdicts.module());
+    install(ConflictMemo.module());
+    install(CascadeTracker.module());
+    install(
+        new LifecycleModule() {
+          @Override
+          protected void configure() {
+            listener().to(MergeValidationExecutor.class);
+          }
+        });
     install(
         new RestApiModule() {
           @Override
@@ -50,6 +73,11 @@ public class AutomergerModule extends AbstractModule {
             post(REVISION_KIND, "config-downstream").to(ConfigDownstreamAction.class);
             get(BRANCH_KIND, "all-config-downstream").to(AllConfigDownstreamAction.class);
             get(CONFIG_KIND, "automerge-mode").to(AutomergeMode.class);
+            get(CONFIG_KIND, "tasks").to(ListTasks.class);
+            post(CONFIG_KIND, "cancel-task").to(CancelTask.class);
+            get(CONFIG_KIND, "caches").to(ListCaches.class);
+            post(CONFIG_KIND, "flush-caches").to(FlushCaches.class);
+            post(CONFIG_KIND, "warm-caches").to(WarmCaches.class);
           }
         });
     DynamicSet.bind(binder(), WebUiPlugin.class).toInstance(new JavaScriptPlugin("automerger.js"));
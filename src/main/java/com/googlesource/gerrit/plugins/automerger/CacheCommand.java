@@ -0,0 +1,85 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.automerger;
+
+import com.google.gerrit.common.data.GlobalCapability;
+import com.google.gerrit.extensions.annotations.RequiresCapability;
+import com.google.gerrit.sshd.CommandMetaData;
+import com.google.gerrit.sshd.SshCommand;
+import com.google.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+import org.kohsuke.args4j.Argument;
+import org.kohsuke.args4j.Option;
+
+/** Shows statistics of the caches of the plugin, flushes them or warms them. */
+@RequiresCapability(GlobalCapability.ADMINISTRATE_SERVER)
+@CommandMetaData(name = "cache", description = "Show, flush or warm automerger caches")
+class CacheCommand extends SshCommand {
+
+  @Argument(index = 0, required = true, metaVar = "stats|flush|warm", usage = "operation")
+  private String operation;
+
+  @Argument(index = 1, multiValued = true, metaVar = "CACHE", usage = "caches, all if not set")
+  private List<String> names = new ArrayList<>();
+
+  @Option(name = "--limit", metaVar = "N", usage = "maximum number of open changes to warm with")
+  private int limit = WarmCaches.DEFAULT_LIMIT;
+
+  private final AutomergerCaches caches;
+
+  @Inject
+  CacheCommand(AutomergerCaches caches) {
+    this.caches = caches;
+  }
+
+  @Override
+  protected void run() throws Exception {
+    try {
+      switch (operation) {
+        case "stats":
+          printStats();
+          break;
+        case "flush":
+          for (String name : caches.flush(names)) {
+            stdout.println("Flushed " + name);
+          }
+          break;
+        case "warm":
+          stdout.format(
+              "Warmed %s with %d changes\n", CommitTopicCache.CACHE_NAME, caches.warm(limit));
+          break;
+        default:
+          throw die("Unknown operation " + operation + ", expected stats, flush or warm");
+      }
+    } catch (IllegalArgumentException e) {
+      throw die(e.getMessage());
+    }
+  }
+
+  private void printStats() {
+    String format = "%-20s %8s %8s %10s %10s\n";
+    stdout.format(format, "Name", "Entries", "Hit%", "AvgLoad", "Evictions");
+    for (AutomergerCaches.CacheInfo cache : caches.getStats(names)) {
+      stdout.format(
+          format,
+          cache.name,
+          cache.entries,
+          String.format("%.0f%%", cache.hitRate * 100),
+          cache.averageLoadMillis + "ms",
+          cache.evictions);
+    }
+  }
+}
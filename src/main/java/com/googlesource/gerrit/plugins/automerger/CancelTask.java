@@ -0,0 +1,60 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.automerger;
+
+import com.google.gerrit.common.data.GlobalCapability;
+import com.google.gerrit.extensions.annotations.RequiresCapability;
+import com.google.gerrit.extensions.restapi.BadRequestException;
+import com.google.gerrit.extensions.restapi.DefaultInput;
+import com.google.gerrit.extensions.restapi.ResourceNotFoundException;
+import com.google.gerrit.extensions.restapi.Response;
+import com.google.gerrit.extensions.restapi.RestApiException;
+import com.google.gerrit.extensions.restapi.RestModifyView;
+import com.google.gerrit.server.config.ConfigResource;
+import com.google.inject.Inject;
+
+/** Cancels a queued or running automerger task. */
+@RequiresCapability(GlobalCapability.ADMINISTRATE_SERVER)
+class CancelTask implements RestModifyView<ConfigResource, CancelTask.Input> {
+
+  private final TaskRegistry taskRegistry;
+
+  @Inject
+  public CancelTask(TaskRegistry taskRegistry) {
+    this.taskRegistry = taskRegistry;
+  }
+
+  /**
+   * Cancel the task with the given id.
+   *
+   * @param input Id of the task, as listed by ListTasks.
+   * @return No content.
+   * @throws RestApiException if there is no such task.
+   */
+  @Override
+  public Response<?> apply(ConfigResource configResource, Input input) throws RestApiException {
+    if (input == null || input.id == null) {
+      throw new BadRequestException("id is required");
+    }
+    if (!taskRegistry.cancel(input.id)) {
+      throw new ResourceNotFoundException("No automerger task " + input.id);
+    }
+    return Response.none();
+  }
+
+  static class Input {
+    @DefaultInput String id;
+  }
+}
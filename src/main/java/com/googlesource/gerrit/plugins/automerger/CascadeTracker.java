@@ -0,0 +1,125 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.automerger;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.inject.Inject;
+import com.google.inject.Module;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CascadeTracker follows a change through all the downstream changes automerger creates from it,
+ * and reports how long each hop and the whole cascade took.
+ *
+ * <p>A change that automerger did not create starts a cascade with a new correlation id. Every
+ * downstream change created or updated from it is remembered with that cascade, so that when it
+ * is automerged in turn its own downstreams are reported as part of the same cascade.
+ */
+@Singleton
+public class CascadeTracker {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+  static final String CACHE_NAME = "cascades";
+
+  private final AutomergerMetrics metrics;
+  private final Cache<Integer, Hop> cache;
+  private final Ticker ticker = Ticker.systemTicker();
+
+  public static Module module() {
+    return new CacheModule() {
+      @Override
+      protected void configure() {
+        cache(CACHE_NAME, Integer.class, Hop.class)
+            .maximumWeight(10000)
+            .expireAfterWrite(Duration.ofHours(1));
+      }
+    };
+  }
+
+  @Inject
+  public CascadeTracker(AutomergerMetrics metrics, @Named(CACHE_NAME) Cache<Integer, Hop> cache) {
+    this.metrics = metrics;
+    this.cache = cache;
+  }
+
+  /**
+   * Get the hop of a change that is about to be automerged, and forget it so that later uploads
+   * to the change start a new cascade.
+   *
+   * @param changeNumber Change being automerged.
+   * @param branch Branch of the change.
+   * @return The hop that created the change, or the start of a new cascade if automerger did not
+   *     create it.
+   */
+  public Hop start(int changeNumber, String branch) {
+    Hop hop = cache.asMap().remove(changeNumber);
+    if (hop != null) {
+      return hop;
+    }
+    long now = ticker.read();
+    hop = new Hop(UUID.randomUUID().toString(), branch, now, now);
+    logger.atFine().log("Cascade %s starts at %s on %s", hop.correlationId, changeNumber, branch);
+    return hop;
+  }
+
+  /**
+   * Report that a downstream change got a new patch set from the given hop.
+   *
+   * @param upstream Hop of the upstream change.
+   * @param upstreamBranch Branch of the upstream change.
+   * @param downstreamBranch Branch of the downstream change.
+   * @param downstreamChangeNumber Downstream change that was created or updated.
+   */
+  public void recordHop(
+      Hop upstream, String upstreamBranch, String downstreamBranch, int downstreamChangeNumber) {
+    long now = ticker.read();
+    long hopNanos = now - upstream.createdNanos;
+    long cascadeNanos = now - upstream.startNanos;
+    metrics.cascadeHopLatency.record(
+        upstreamBranch + ":" + downstreamBranch, hopNanos, TimeUnit.NANOSECONDS);
+    metrics.cascadeLatency.record(
+        upstream.originBranch + ":" + downstreamBranch, cascadeNanos, TimeUnit.NANOSECONDS);
+    logger.atFine().log(
+        "Cascade %s reached %s on %s after %s ms",
+        upstream.correlationId,
+        downstreamChangeNumber,
+        downstreamBranch,
+        TimeUnit.NANOSECONDS.toMillis(cascadeNanos));
+    cache.put(
+        downstreamChangeNumber,
+        new Hop(upstream.correlationId, upstream.originBranch, upstream.startNanos, now));
+  }
+
+  /** Position of a change in a cascade. */
+  public static class Hop {
+    public final String correlationId;
+    public final String originBranch;
+    final long startNanos;
+    final long createdNanos;
+
+    Hop(String correlationId, String originBranch, long startNanos, long createdNanos) {
+      this.correlationId = correlationId;
+      this.originBranch = originBranch;
+      this.startNanos = startNanos;
+      this.createdNanos = createdNanos;
+    }
+  }
+}
@@ -1,16 +1,19 @@
 package com.googlesource.gerrit.plugins.automerger;
 
 import com.google.gerrit.exceptions.StorageException;
-import com.google.gerrit.extensions.api.changes.ChangeApi;
+import com.google.gerrit.extensions.common.ChangeInfo;
 import com.google.gerrit.extensions.restapi.RestApiException;
 import org.eclipse.jgit.errors.ConfigInvalidException;
 
 /** ChangeCreatorApi is the interface used to create or update downstream changes. */
 public interface ChangeCreatorApi {
-  ChangeApi create(SingleDownstreamChangeInput sdsChangeInput, String currentTopic)
+  ChangeInfo create(SingleDownstreamChangeInput sdsChangeInput, String currentTopic)
       throws RestApiException, ConfigInvalidException, InvalidQueryParameterException,
       StorageException;
 
-  void update(UpdateDownstreamChangeInput updateDownstreamChangeInput)
+  ChangeInfo update(UpdateDownstreamChangeInput updateDownstreamChangeInput)
       throws RestApiException, ConfigInvalidException, InvalidQueryParameterException;
+
+  /** Apply the updates deferred while creating or updating the downstreams of one change. */
+  default void flush() throws RestApiException {}
 }
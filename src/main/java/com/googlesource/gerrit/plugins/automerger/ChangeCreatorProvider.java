@@ -1,7 +1,6 @@
 package com.googlesource.gerrit.plugins.automerger;
 
 import com.google.common.flogger.FluentLogger;
-import com.google.gerrit.extensions.api.GerritApi;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import org.eclipse.jgit.errors.ConfigInvalidException;
@@ -13,16 +12,19 @@ import org.eclipse.jgit.errors.ConfigInvalidException;
 public class ChangeCreatorProvider implements Provider<ChangeCreatorApi> {
 
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
-  private final GerritApi gApi;
   private final ConfigLoader config;
+  private final Provider<MergeChangeCreator> mergeChangeCreator;
+  private final Provider<CherryPickChangeCreator> cherryPickChangeCreator;
 
   @Inject
   public ChangeCreatorProvider(
-      GerritApi gApi,
-      ConfigLoader config
+      ConfigLoader config,
+      Provider<MergeChangeCreator> mergeChangeCreator,
+      Provider<CherryPickChangeCreator> cherryPickChangeCreator
   ) {
-    this.gApi = gApi;
     this.config = config;
+    this.mergeChangeCreator = mergeChangeCreator;
+    this.cherryPickChangeCreator = cherryPickChangeCreator;
   }
 
   @Override
@@ -36,9 +38,9 @@ public class ChangeCreatorProvider implements Provider<ChangeCreatorApi> {
     }
 
     if(changeMode == ChangeMode.CHERRY_PICK){
-      return new CherryPickChangeCreator(gApi);
+      return cherryPickChangeCreator.get();
     } else {
-      return new MergeChangeCreator(gApi);
+      return mergeChangeCreator.get();
     }
   }
 }
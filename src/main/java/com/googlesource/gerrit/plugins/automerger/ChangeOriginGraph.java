@@ -0,0 +1,116 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.automerger;
+
+import com.google.gerrit.extensions.common.ChangeInfo;
+import com.google.gerrit.extensions.common.CommitInfo;
+import com.google.gerrit.extensions.common.RevisionInfo;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory graph of the changes in a topic, linking every automerger-created change to the
+ * upstream change it came from.
+ *
+ * <p>In merge mode a change points at the change whose current revision is its second parent. In
+ * cherry-pick mode it points at the change and patch set it was cherry-picked from. Walking the
+ * links from any change leads to the change that started the cascade.
+ */
+class ChangeOriginGraph {
+  private final Map<Integer, ChangeInfo> changesByNumber = new HashMap<>();
+  private final Map<String, ChangeInfo> changesByCurrentRevision = new HashMap<>();
+
+  /**
+   * Build the graph from the changes of a topic.
+   *
+   * @param changesInTopic Changes fetched with ALL_REVISIONS and CURRENT_COMMIT.
+   */
+  ChangeOriginGraph(List<ChangeInfo> changesInTopic) {
+    for (ChangeInfo change : changesInTopic) {
+      add(change);
+    }
+  }
+
+  void add(ChangeInfo change) {
+    changesByNumber.put(change._number, change);
+    if (change.currentRevision != null) {
+      changesByCurrentRevision.put(change.currentRevision, change);
+    }
+  }
+
+  boolean contains(int changeNumber) {
+    return changesByNumber.containsKey(changeNumber);
+  }
+
+  /**
+   * Find the change that started the cascade the given change is part of.
+   *
+   * @param changeNumber Change to start from; it must be part of the graph.
+   * @param revision Revision of the change to start from.
+   * @param changeMode Whether downstream changes are merges or cherry-picks.
+   * @return The change at the root of the cascade, or the given change if it has no upstream.
+   */
+  ChangeInfo getOriginalChange(int changeNumber, String revision, ChangeMode changeMode) {
+    ChangeInfo current = changesByNumber.get(changeNumber);
+    if (current == null) {
+      throw new IllegalArgumentException("Change " + changeNumber + " is not part of the graph");
+    }
+    Set<Integer> visited = new HashSet<>();
+    visited.add(current._number);
+    ChangeInfo upstream = getUpstream(current, revision, changeMode);
+    while (upstream != null && visited.add(upstream._number)) {
+      current = upstream;
+      upstream = getUpstream(current, current.currentRevision, changeMode);
+    }
+    return current;
+  }
+
+  private ChangeInfo getUpstream(ChangeInfo change, String revision, ChangeMode changeMode) {
+    if (changeMode == ChangeMode.CHERRY_PICK) {
+      return getCherryPickUpstream(change);
+    }
+    return getMergeUpstream(change, revision);
+  }
+
+  private ChangeInfo getMergeUpstream(ChangeInfo change, String revision) {
+    if (change.revisions == null) {
+      return null;
+    }
+    RevisionInfo revisionInfo = change.revisions.get(revision);
+    if (revisionInfo == null || revisionInfo.commit == null) {
+      return null;
+    }
+    List<CommitInfo> parents = revisionInfo.commit.parents;
+    if (parents == null || parents.size() < 2) {
+      return null;
+    }
+    return changesByCurrentRevision.get(parents.get(1).commit);
+  }
+
+  private ChangeInfo getCherryPickUpstream(ChangeInfo change) {
+    if (change.cherryPickOfChange == null) {
+      return null;
+    }
+    ChangeInfo upstream = changesByNumber.get(change.cherryPickOfChange);
+    if (upstream != null
+        && ChangeUtils.isDownstreamCherryPick(UpstreamRevision.fromChange(upstream), change)) {
+      return upstream;
+    }
+    return null;
+  }
+}
@@ -12,10 +12,16 @@ import com.google.gerrit.extensions.common.CommitInfo;
 import com.google.gerrit.extensions.common.RevisionInfo;
 import com.google.gerrit.extensions.restapi.AuthException;
 import com.google.gerrit.extensions.restapi.RestApiException;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
 
 /** ChangeUtils is a utility class for interacting with Gerrit changes */
 public final class ChangeUtils {
@@ -86,24 +92,6 @@ public final class ChangeUtils {
         .join(upstreamSubject, denotationString, upstreamRevision.substring(0, 10));
   }
 
-  public static String getTopic(GerritApi gApi, String revision) throws InvalidQueryParameterException, RestApiException {
-    QueryBuilder queryBuilder = new QueryBuilder();
-    queryBuilder.addParameter("commit", revision);
-    List<ChangeInfo> changes =
-        gApi.changes()
-            .query(queryBuilder.get())
-            .withOption(ListChangesOption.CURRENT_REVISION)
-            .get();
-    if (!changes.isEmpty()) {
-      for (ChangeInfo change : changes) {
-        if (change.currentRevision.equals(revision) && !"".equals(change.topic)) {
-          return change.topic;
-        }
-      }
-    }
-    return null;
-  }
-
   public static void tagChange(GerritApi gApi, ChangeInfo change, String message) throws RestApiException {
     ReviewInput reviewInput = new ReviewInput();
     reviewInput.message(message);
@@ -120,21 +108,23 @@ public final class ChangeUtils {
     return "am_skip_" + downstreamBranch;
   }
 
-  public static boolean isDownstreamCherryPick(GerritApi gApi, String upstreamRevision, ChangeInfo downstreamChange){
-    try {
-      ChangeInfo upstreamChange = gApi.changes().id(upstreamRevision).get();
-      int upstreamPatchset = upstreamChange.revisions.get(upstreamRevision)._number;
-
-      if(downstreamChange.cherryPickOfChange == null)
-        return false;
-
-      return downstreamChange.cherryPickOfChange.equals(upstreamChange._number) &&
-          downstreamChange.cherryPickOfPatchSet == upstreamPatchset;
-    } catch (RestApiException e) {
-      logger.atSevere().withCause(e).log(
-          "Unable to lookup change with revision %s", upstreamRevision);
+  /**
+   * Check whether the downstream change is a cherry-pick of the upstream patch set.
+   *
+   * <p>The upstream has to be resolved once by the caller, so that a batch of candidates can be
+   * checked by comparing fields only.
+   *
+   * @param upstream The upstream revision with its change and patch set number.
+   * @param downstreamChange Candidate downstream change.
+   * @return True if the downstream change was cherry-picked from the upstream patch set.
+   */
+  public static boolean isDownstreamCherryPick(UpstreamRevision upstream, ChangeInfo downstreamChange){
+    if(upstream == null || downstreamChange.cherryPickOfChange == null)
       return false;
-    }
+
+    return downstreamChange.cherryPickOfChange == upstream.changeNumber
+        && downstreamChange.cherryPickOfPatchSet != null
+        && downstreamChange.cherryPickOfPatchSet == upstream.patchsetNumber;
   }
 
   public static boolean isDownstreamMerge(String upstreamRevision, ChangeInfo downstreamChange){
@@ -151,13 +141,70 @@ public final class ChangeUtils {
     return false;
   }
 
-  public static boolean isDownstreamChange(GerritApi gApi, String upstreamRevision, ChangeInfo downstreamChange, ChangeMode changeMode) {
-    boolean downstreamExists = (changeMode == ChangeMode.CHERRY_PICK) && isDownstreamCherryPick(gApi, upstreamRevision, downstreamChange);
-    downstreamExists |= (changeMode == ChangeMode.MERGE) && isDownstreamMerge(upstreamRevision, downstreamChange);
+  public static boolean isDownstreamChange(UpstreamRevision upstream, ChangeInfo downstreamChange, ChangeMode changeMode) {
+    if (upstream == null) {
+      return false;
+    }
+    boolean downstreamExists = (changeMode == ChangeMode.CHERRY_PICK) && isDownstreamCherryPick(upstream, downstreamChange);
+    downstreamExists |= (changeMode == ChangeMode.MERGE) && isDownstreamMerge(upstream.revision, downstreamChange);
 
     return downstreamExists;
   }
 
+  /**
+   * Check whether the downstream commit is a merge of the upstream revision.
+   *
+   * <p>Unlike {@link #isDownstreamMerge(String, ChangeInfo)} the parents are read from the object
+   * database, so the downstream change only needs to be fetched with CURRENT_REVISION.
+   *
+   * @param revWalk RevWalk over the repository of both changes, shared across candidates.
+   * @param upstreamRevision Commit SHA1 of the upstream revision.
+   * @param downstreamRevision Commit SHA1 of the candidate downstream revision.
+   * @return True if the upstream revision is the second parent of the downstream commit.
+   * @throws IOException
+   */
+  public static boolean isDownstreamMerge(
+      RevWalk revWalk, String upstreamRevision, String downstreamRevision) throws IOException {
+    if (downstreamRevision == null) {
+      return false;
+    }
+    RevCommit downstreamCommit;
+    try {
+      downstreamCommit = revWalk.parseCommit(ObjectId.fromString(downstreamRevision));
+    } catch (MissingObjectException | IncorrectObjectTypeException e) {
+      logger.atFine().withCause(e).log("Could not read downstream commit %s", downstreamRevision);
+      return false;
+    }
+    return downstreamCommit.getParentCount() > 1
+        && downstreamCommit.getParent(1).name().equals(upstreamRevision);
+  }
+
+  /**
+   * Check whether the downstream change was created from the upstream revision, reading merge
+   * parents through the given RevWalk.
+   *
+   * @param revWalk RevWalk over the repository of both changes, shared across candidates.
+   * @param upstream The upstream revision with its change and patch set number.
+   * @param downstreamChange Candidate downstream change, fetched with at least CURRENT_REVISION.
+   * @param changeMode Whether downstream changes are merges or cherry-picks.
+   * @return True if the downstream change was created from the upstream revision.
+   * @throws IOException
+   */
+  public static boolean isDownstreamChange(
+      RevWalk revWalk,
+      UpstreamRevision upstream,
+      ChangeInfo downstreamChange,
+      ChangeMode changeMode)
+      throws IOException {
+    if (upstream == null) {
+      return false;
+    }
+    if (changeMode == ChangeMode.CHERRY_PICK) {
+      return isDownstreamCherryPick(upstream, downstreamChange);
+    }
+    return isDownstreamMerge(revWalk, upstream.revision, downstreamChange.currentRevision);
+  }
+
   /**
    * Get the base change ID that the downstream change should be based off of, given the parents.
    *
@@ -165,45 +212,60 @@ public final class ChangeUtils {
    * the downstream change autogenerated by A, and B' is the downstream change autogenerated by A,
    * the first parent of B' should be A'.
    *
+   * <p>The parent is resolved through the commit to topic cache and the downstream index, so a
+   * topic query is only needed when automerger has not seen A or A' yet.
+   *
    * @param parents Parent commit SHAs of the change
    * @return The base change ID that the change should be based off of, null if there is none.
    * @throws InvalidQueryParameterException
    * @throws RestApiException
    */
-  private static ChangeInfo getBaseChangeInfo(GerritApi gApi, List<String> parents, String branch, ChangeMode changeMode)
+  private static ChangeInfo getBaseChangeInfo(GerritApi gApi, CommitTopicCache commitTopicCache,
+      DownstreamIndex downstreamIndex, List<String> parents, String branch, ChangeMode changeMode)
       throws InvalidQueryParameterException, RestApiException {
     if (parents.isEmpty()) {
       logger.atInfo().log("No base change id for change with no parents.");
       return null;
     }
     // 1) Get topic of first parent
-    String firstParentTopic = ChangeUtils.getTopic(gApi, parents.get(0));
-    if (firstParentTopic == null) {
+    CommitTopicCache.CommitTopic firstParentChange = commitTopicCache.get(parents.get(0));
+    if (firstParentChange == null
+        || firstParentChange.topic == null
+        || "".equals(firstParentChange.topic)) {
       return null;
     }
+    String firstParentTopic = firstParentChange.topic;
+    UpstreamRevision firstParent = firstParentChange.toUpstreamRevision(parents.get(0));
+    ChangeInfo indexedChange = downstreamIndex.getDownstreamChange(firstParent, branch, changeMode);
+    if (indexedChange != null) {
+      return indexedChange;
+    }
     // 2) query that topic and use that to find A'
-    List<ChangeInfo> changesInTopic = ChangeUtils.getChangesInTopicAndBranch(gApi, firstParentTopic, branch);
-    String firstParent = parents.get(0);
+    List<ChangeInfo> changesInTopic =
+        ChangeUtils.getChangesInTopicAndBranch(gApi, firstParentTopic, branch);
+    commitTopicCache.putAll(changesInTopic);
     for (ChangeInfo change : changesInTopic) {
-      if(isDownstreamChange(gApi, firstParent, change, changeMode)){
+      if(isDownstreamChange(firstParent, change, changeMode)){
+        downstreamIndex.put(firstParent, branch, change._number);
         return change;
       }
     }
     return null;
   }
-  public static String getBaseChangeIdForMerge(GerritApi gApi, List<String> parents, String branch)
+  public static ChangeInfo getBaseChangeForMerge(GerritApi gApi,
+      CommitTopicCache commitTopicCache, DownstreamIndex downstreamIndex, List<String> parents,
+      String branch)
       throws InvalidQueryParameterException, RestApiException {
-    ChangeInfo change = getBaseChangeInfo(gApi, parents, branch, ChangeMode.MERGE);
-
-    if(change == null)
-      return null;
-
-    return String.valueOf(change._number);
+    return getBaseChangeInfo(
+        gApi, commitTopicCache, downstreamIndex, parents, branch, ChangeMode.MERGE);
   }
 
-  public static String getBaseChangeRevisionForCherryPick(GerritApi gApi, List<String> parents, String branch)
+  public static String getBaseChangeRevisionForCherryPick(GerritApi gApi,
+      CommitTopicCache commitTopicCache, DownstreamIndex downstreamIndex, List<String> parents,
+      String branch)
       throws InvalidQueryParameterException, RestApiException {
-    ChangeInfo change = getBaseChangeInfo(gApi, parents, branch, ChangeMode.CHERRY_PICK);
+    ChangeInfo change = getBaseChangeInfo(
+        gApi, commitTopicCache, downstreamIndex, parents, branch, ChangeMode.CHERRY_PICK);
 
     if(change == null)
       return null;
@@ -1,5 +1,8 @@
 package com.googlesource.gerrit.plugins.automerger;
 
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Sets;
 import com.google.common.flogger.FluentLogger;
 import com.google.gerrit.exceptions.StorageException;
 import com.google.gerrit.extensions.api.GerritApi;
@@ -8,12 +11,17 @@ import com.google.gerrit.extensions.api.changes.ChangeApi;
 import com.google.gerrit.extensions.api.changes.CherryPickInput;
 import com.google.gerrit.extensions.api.changes.HashtagsInput;
 import com.google.gerrit.extensions.api.changes.NotifyHandling;
+import com.google.gerrit.extensions.api.changes.RestoreInput;
+import com.google.gerrit.extensions.client.ChangeStatus;
 import com.google.gerrit.extensions.common.ChangeInfo;
+import com.google.gerrit.extensions.restapi.MergeConflictException;
 import com.google.gerrit.extensions.restapi.RestApiException;
+import com.google.gerrit.server.submit.IntegrationConflictException;
 import com.google.inject.Inject;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
 import org.eclipse.jgit.errors.ConfigInvalidException;
 
 /**
@@ -24,26 +32,42 @@ public class CherryPickChangeCreator implements ChangeCreatorApi {
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
   private static final String SUBJECT_PREFIX = "autocherry";
   private final GerritApi gApi;
+  private final DownstreamIndex downstreamIndex;
+  private final CommitTopicCache commitTopicCache;
+  private final ConflictMemo conflictMemo;
+  private final ConfigLoader config;
+  // Skip hashtags per upstream change, applied together on flush.
+  private final SetMultimap<Integer, String> skipHashtagsToAdd = HashMultimap.create();
+  private final SetMultimap<Integer, String> skipHashtagsToRemove = HashMultimap.create();
   @Inject
   public CherryPickChangeCreator(
-      GerritApi gApi) {
+      GerritApi gApi,
+      DownstreamIndex downstreamIndex,
+      CommitTopicCache commitTopicCache,
+      ConflictMemo conflictMemo,
+      ConfigLoader config) {
     this.gApi = gApi;
+    this.downstreamIndex = downstreamIndex;
+    this.commitTopicCache = commitTopicCache;
+    this.conflictMemo = conflictMemo;
+    this.config = config;
   }
 
   /**
    * Create a single downstream cherry-pick.
    *
-   * <p>On a skip, only a hashtag is applied to the upstream change.</p>
+   * <p>On a skip, only a hashtag is applied to the upstream change, once flush is called.</p>
    *
    * @param sdsChangeInput Input containing metadata for the cherry-pick.
    * @param currentTopic Current topic to create change in.
+   * @return The created downstream change, or null if it was skipped or already exists.
    * @throws RestApiException
    * @throws ConfigInvalidException
    * @throws InvalidQueryParameterException
    * @throws StorageException
    */
   @Override
-  public ChangeApi create(SingleDownstreamChangeInput sdsChangeInput, String currentTopic)
+  public ChangeInfo create(SingleDownstreamChangeInput sdsChangeInput, String currentTopic)
       throws RestApiException, ConfigInvalidException, InvalidQueryParameterException, StorageException {
 
     if (!sdsChangeInput.doChange) {
@@ -67,47 +91,156 @@ public class CherryPickChangeCreator implements ChangeCreatorApi {
 
     removeSkipHashtag(sdsChangeInput);
 
+    return cherryPick(sdsChangeInput, currentTopic, null);
+  }
+
+  /**
+   * Cherry-pick the upstream revision onto the downstream branch.
+   *
+   * @param sdsChangeInput Input containing metadata for the cherry-pick.
+   * @param currentTopic Current topic to create change in.
+   * @param downstreamChangeId Change-Id of the downstream change to add a patch set to, or null to
+   *     create a new change.
+   * @return The created or updated downstream change.
+   */
+  private ChangeInfo cherryPick(
+      SingleDownstreamChangeInput sdsChangeInput, String currentTopic, String downstreamChangeId)
+      throws RestApiException, InvalidQueryParameterException {
     CherryPickInput cherryPickInput = new CherryPickInput();
     cherryPickInput.base =
-        ChangeUtils.getBaseChangeRevisionForCherryPick(gApi,
+        ChangeUtils.getBaseChangeRevisionForCherryPick(gApi, commitTopicCache, downstreamIndex,
             ChangeUtils.getChangeParents(gApi, sdsChangeInput.changeNumber, sdsChangeInput.currentRevision),
             sdsChangeInput.downstreamBranch);
     cherryPickInput.message =
         ChangeUtils.getSubjectForDownstreamChange(SUBJECT_PREFIX, sdsChangeInput.subject, sdsChangeInput.currentRevision, !sdsChangeInput.doChange);
+    if (downstreamChangeId != null) {
+      // Gerrit adds the cherry-pick as a new patch set of the open change with this Change-Id.
+      cherryPickInput.message += "\n\nChange-Id: " + downstreamChangeId;
+    }
     cherryPickInput.destination = sdsChangeInput.downstreamBranch;
     cherryPickInput.notify = NotifyHandling.NONE;
     cherryPickInput.topic = currentTopic;
 
-    return gApi.changes().id(sdsChangeInput.changeNumber).current().cherryPick(cherryPickInput);
+    String base =
+        conflictMemo.getBase(
+            sdsChangeInput.project, sdsChangeInput.downstreamBranch, cherryPickInput.base);
+    conflictMemo.check(sdsChangeInput.currentRevision, base);
+    try {
+      return gApi.changes()
+          .id(sdsChangeInput.changeNumber)
+          .current()
+          .cherryPickAsInfo(cherryPickInput);
+    } catch (MergeConflictException | IntegrationConflictException e) {
+      conflictMemo.put(sdsChangeInput.currentRevision, base, e.getMessage());
+      throw e;
+    }
   }
 
-  private Set<String> getSkipHashtagSet(String downstreamBranch) {
-    Set<String> set = new HashSet<>();
-    set.add(ChangeUtils.getSkipHashtag(downstreamBranch));
-    return set;
+  private void applySkipHashtag(SingleDownstreamChangeInput sdsChangeInput) {
+    String hashtag = ChangeUtils.getSkipHashtag(sdsChangeInput.downstreamBranch);
+    skipHashtagsToRemove.remove(sdsChangeInput.changeNumber, hashtag);
+    skipHashtagsToAdd.put(sdsChangeInput.changeNumber, hashtag);
   }
 
-  private void applySkipHashtag(SingleDownstreamChangeInput sdsChangeInput) throws RestApiException {
-    ChangeApi originalChange = gApi.changes().id(sdsChangeInput.changeNumber);
-    Set<String> set = getSkipHashtagSet(sdsChangeInput.downstreamBranch);
-    originalChange.setHashtags(new HashtagsInput(set));
+  private void removeSkipHashtag(SingleDownstreamChangeInput sdsChangeInput) {
+    String hashtag = ChangeUtils.getSkipHashtag(sdsChangeInput.downstreamBranch);
+    skipHashtagsToAdd.remove(sdsChangeInput.changeNumber, hashtag);
+    skipHashtagsToRemove.put(sdsChangeInput.changeNumber, hashtag);
   }
 
-  private void removeSkipHashtag(SingleDownstreamChangeInput sdsChangeInput) throws RestApiException {
-    ChangeApi originalChange = gApi.changes().id(sdsChangeInput.changeNumber);
-    Set<String> set = getSkipHashtagSet(sdsChangeInput.downstreamBranch);
-
-    // It is safe to blindly attempt to remove the hashtag.
-    originalChange.setHashtags(new HashtagsInput(null, set));
+  /**
+   * Apply the skip hashtags collected for all downstream branches, with one update per upstream
+   * change that only contains the hashtags it does not have yet or still has.
+   *
+   * @throws RestApiException
+   */
+  @Override
+  public void flush() throws RestApiException {
+    Set<Integer> changeNumbers = new TreeSet<>(skipHashtagsToAdd.keySet());
+    changeNumbers.addAll(skipHashtagsToRemove.keySet());
+    for (int changeNumber : changeNumbers) {
+      ChangeApi originalChange = gApi.changes().id(changeNumber);
+      Set<String> currentHashtags = originalChange.getHashtags();
+      Set<String> add =
+          new HashSet<>(Sets.difference(skipHashtagsToAdd.get(changeNumber), currentHashtags));
+      Set<String> remove =
+          new HashSet<>(Sets.intersection(skipHashtagsToRemove.get(changeNumber), currentHashtags));
+      if (!add.isEmpty() || !remove.isEmpty()) {
+        originalChange.setHashtags(new HashtagsInput(add, remove));
+      }
+    }
+    skipHashtagsToAdd.clear();
+    skipHashtagsToRemove.clear();
   }
 
   @Override
-  public void update(UpdateDownstreamChangeInput updateDownstreamChangeInput)
+  public ChangeInfo update(UpdateDownstreamChangeInput updateDownstreamChangeInput)
       throws RestApiException, ConfigInvalidException, InvalidQueryParameterException {
+    if (updateDownstreamChangeInput.doChange && config.isCherryPickUpdateInPlace()) {
+      ChangeInfo updatedDownstream = updateInPlace(updateDownstreamChangeInput);
+      if (updatedDownstream != null) {
+        return updatedDownstream;
+      }
+    }
+
+    // Unless updating in place, we don't update the prior existing commit with a patch
+    // application. Instead, we abandon the old one and create a new one.
+    abandonObsolete(updateDownstreamChangeInput);
+
+    SingleDownstreamChangeInput sdsChangeInput = getSingleDownstreamChangeInput(
+        updateDownstreamChangeInput);
 
-    // For cherry-picks, we don't update the prior existing commit with a patch application.
-    // Doing this will not update the 'Cherry pick of' metadata with the correct patchset.
-    // Instead, we abandon the old one and create a new one.
+    // We still "create" in the event of a skip to apply the appropriate hashtag.
+    return create(sdsChangeInput, updateDownstreamChangeInput.topic);
+  }
+
+  /**
+   * Cherry-pick the new upstream patch set as a new patch set of the existing downstream change.
+   *
+   * @param updateDownstreamChangeInput Input containing metadata for the update.
+   * @return The updated downstream change, or null if it has to be recreated instead.
+   */
+  private ChangeInfo updateInPlace(UpdateDownstreamChangeInput updateDownstreamChangeInput)
+      throws RestApiException, InvalidQueryParameterException {
+    ChangeApi originalChange =
+        gApi.changes().id(updateDownstreamChangeInput.downstreamChangeNumber);
+    ChangeInfo originalInfo = originalChange.info();
+    if (originalInfo.status == ChangeStatus.MERGED) {
+      return null;
+    }
+    if (originalInfo.status == ChangeStatus.ABANDONED) {
+      RestoreInput restoreInput = new RestoreInput();
+      restoreInput.message = "Restoring change due to upstream automerge.";
+      originalChange.restore(restoreInput);
+    }
+
+    SingleDownstreamChangeInput sdsChangeInput =
+        getSingleDownstreamChangeInput(updateDownstreamChangeInput);
+    removeSkipHashtag(sdsChangeInput);
+    ChangeInfo updatedDownstream =
+        cherryPick(sdsChangeInput, updateDownstreamChangeInput.topic, originalInfo.changeId);
+    if (updatedDownstream._number != updateDownstreamChangeInput.downstreamChangeNumber) {
+      // Gerrit created a new change after all, so the old one is obsolete.
+      abandonObsolete(updateDownstreamChangeInput);
+      return updatedDownstream;
+    }
+    if (Integer.valueOf(updateDownstreamChangeInput.upstreamChangeNumber)
+            .equals(updatedDownstream.cherryPickOfChange)
+        && Integer.valueOf(updateDownstreamChangeInput.patchSetNumber)
+            .equals(updatedDownstream.cherryPickOfPatchSet)) {
+      return updatedDownstream;
+    }
+    // Without the new cherry-pick-of metadata, the change would no longer be recognized as the
+    // downstream of the upstream patch set.
+    logger.atWarning().log(
+        "Cherry-pick of %s did not update downstream change %s in place, recreating it",
+        updateDownstreamChangeInput.upstreamRevision,
+        updateDownstreamChangeInput.downstreamChangeNumber);
+    return null;
+  }
+
+  private void abandonObsolete(UpdateDownstreamChangeInput updateDownstreamChangeInput)
+      throws RestApiException {
     AbandonInput abandonInput = new AbandonInput();
     abandonInput.notify = NotifyHandling.NONE;
     if(!updateDownstreamChangeInput.doChange){
@@ -116,15 +249,6 @@ public class CherryPickChangeCreator implements ChangeCreatorApi {
       abandonInput.message = "The upstream patch set is no longer current";
     }
     gApi.changes().id(updateDownstreamChangeInput.downstreamChangeNumber).abandon(abandonInput);
-
-    SingleDownstreamChangeInput sdsChangeInput = getSingleDownstreamChangeInput(
-        updateDownstreamChangeInput);
-
-    // We still "create" in the event of a skip to apply the appropriate hashtag.
-    ChangeApi newDownstream = create(sdsChangeInput, updateDownstreamChangeInput.topic);
-    if(newDownstream != null) {
-      ChangeUtils.tagChange(gApi, newDownstream.get(), "Automerger change created!");
-    }
   }
 
   private static SingleDownstreamChangeInput getSingleDownstreamChangeInput(
@@ -140,11 +264,22 @@ public class CherryPickChangeCreator implements ChangeCreatorApi {
     sdsChangeInput.doChange = updateDownstreamChangeInput.doChange;
     sdsChangeInput.currentRevision = updateDownstreamChangeInput.upstreamRevision;
     sdsChangeInput.downstreamBranch = updateDownstreamChangeInput.downstreamBranch;
+    sdsChangeInput.project = updateDownstreamChangeInput.project;
     return sdsChangeInput;
   }
 
   boolean isAlreadyCherryPicked(SingleDownstreamChangeInput sdsChangeInput, String currentTopic)
       throws InvalidQueryParameterException, RestApiException {
+    UpstreamRevision upstream =
+        new UpstreamRevision(
+            sdsChangeInput.currentRevision,
+            sdsChangeInput.changeNumber,
+            sdsChangeInput.patchsetNumber);
+    if (downstreamIndex.getDownstream(
+            upstream, sdsChangeInput.downstreamBranch, ChangeMode.CHERRY_PICK)
+        != null) {
+      return true;
+    }
 
     List<ChangeInfo> changes =
         ChangeUtils.getChangesInTopicAndBranch(gApi, currentTopic, sdsChangeInput.downstreamBranch);
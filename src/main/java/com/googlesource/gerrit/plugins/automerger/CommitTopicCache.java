@@ -0,0 +1,180 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.automerger;
+
+import static com.google.common.base.Strings.isNullOrEmpty;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.gerrit.extensions.api.GerritApi;
+import com.google.gerrit.extensions.client.ListChangesOption;
+import com.google.gerrit.extensions.common.ChangeInfo;
+import com.google.gerrit.extensions.restapi.RestApiException;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.inject.Inject;
+import com.google.inject.Module;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * CommitTopicCache maps the current revision of a change to the change, patch set and topic it
+ * belongs to.
+ *
+ * <p>It is filled from changes automerger already fetched, so that resolving the base of stacked
+ * changes does not need a commit query per change. Entries of a change are dropped when its topic
+ * is edited or a new patch set is created. Commits of changes without a topic are not cached, so
+ * that a change with a topic is found for a commit that several changes share.
+ */
+@Singleton
+public class CommitTopicCache {
+  static final String CACHE_NAME = "commit_topics";
+  private static final Duration EXPIRY = Duration.ofHours(1);
+
+  private final GerritApi gApi;
+  private final Cache<String, CommitTopic> cache;
+  // Cached revisions per change, so that dropping a change does not scan the whole cache.
+  private final Cache<Integer, Set<String>> revisionsByChange =
+      CacheBuilder.newBuilder().expireAfterWrite(EXPIRY).build();
+
+  public static Module module() {
+    return new CacheModule() {
+      @Override
+      protected void configure() {
+        cache(CACHE_NAME, String.class, CommitTopic.class)
+            .maximumWeight(10000)
+            .expireAfterWrite(EXPIRY);
+      }
+    };
+  }
+
+  @Inject
+  public CommitTopicCache(GerritApi gApi, @Named(CACHE_NAME) Cache<String, CommitTopic> cache) {
+    this.gApi = gApi;
+    this.cache = cache;
+  }
+
+  /**
+   * Get the change whose current revision is the given commit.
+   *
+   * @param revision Commit SHA1 to look up.
+   * @return The change, patch set and topic of the commit, or null if no change with a topic has it
+   *     as current revision.
+   * @throws InvalidQueryParameterException
+   * @throws RestApiException
+   */
+  public CommitTopic get(String revision) throws InvalidQueryParameterException, RestApiException {
+    CommitTopic commitTopic = cache.getIfPresent(revision);
+    if (commitTopic != null) {
+      return commitTopic;
+    }
+    QueryBuilder queryBuilder = new QueryBuilder();
+    queryBuilder.addParameter("commit", revision);
+    putAll(
+        gApi.changes()
+            .query(queryBuilder.get())
+            .withOption(ListChangesOption.CURRENT_REVISION)
+            .get());
+    return cache.getIfPresent(revision);
+  }
+
+  /**
+   * Fill the cache with the current revisions of open changes.
+   *
+   * @param limit Maximum number of changes to fetch.
+   * @return The number of changes fetched.
+   * @throws RestApiException
+   */
+  public int warm(int limit) throws RestApiException {
+    List<ChangeInfo> changes =
+        gApi.changes()
+            .query("status:open")
+            .withOption(ListChangesOption.CURRENT_REVISION)
+            .withLimit(limit)
+            .get();
+    putAll(changes);
+    return changes.size();
+  }
+
+  /**
+   * Remember the current revisions of changes that were fetched with at least CURRENT_REVISION.
+   *
+   * @param changes Changes to remember.
+   */
+  public void putAll(List<ChangeInfo> changes) {
+    for (ChangeInfo change : changes) {
+      UpstreamRevision currentRevision = UpstreamRevision.fromChange(change);
+      if (currentRevision != null) {
+        put(currentRevision, change.topic);
+      }
+    }
+  }
+
+  /**
+   * Remember the topic of a revision automerger is about to handle.
+   *
+   * @param revision Revision with its change and patch set number.
+   * @param topic Topic of the change.
+   */
+  public void put(UpstreamRevision revision, String topic) {
+    if (isNullOrEmpty(topic)) {
+      return;
+    }
+    revisionsByChange
+        .asMap()
+        .compute(
+            revision.changeNumber,
+            (changeNumber, revisions) -> {
+              Set<String> updated = revisions != null ? revisions : ConcurrentHashMap.newKeySet();
+              updated.add(revision.revision);
+              return updated;
+            });
+    cache.put(
+        revision.revision,
+        new CommitTopic(revision.changeNumber, revision.patchsetNumber, topic));
+  }
+
+  /**
+   * Forget all revisions of the given change.
+   *
+   * @param changeNumber Change whose topic or current revision changed.
+   */
+  public void invalidateChange(int changeNumber) {
+    Set<String> revisions = revisionsByChange.asMap().remove(changeNumber);
+    if (revisions != null) {
+      cache.invalidateAll(revisions);
+    }
+  }
+
+  /** Change, patch set and topic a commit belongs to. */
+  public static class CommitTopic {
+    public final int changeNumber;
+    public final int patchsetNumber;
+    public final String topic;
+
+    CommitTopic(int changeNumber, int patchsetNumber, String topic) {
+      this.changeNumber = changeNumber;
+      this.patchsetNumber = patchsetNumber;
+      this.topic = topic;
+    }
+
+    UpstreamRevision toUpstreamRevision(String revision) {
+      return new UpstreamRevision(revision, changeNumber, patchsetNumber);
+    }
+  }
+}
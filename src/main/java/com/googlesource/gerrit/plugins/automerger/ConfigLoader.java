@@ -38,6 +38,7 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import org.eclipse.jgit.errors.ConfigInvalidException;
 import org.eclipse.jgit.lib.Config;
 
@@ -290,6 +291,60 @@ public class ConfigLoader {
     return message;
   }
 
+  /**
+   * Returns how long MergeValidator may take to check the downstreams of a change on submit.
+   *
+   * @return The timeout in milliseconds, or 0 if the check is not time limited.
+   * @throws ConfigInvalidException
+   */
+  public long getMergeValidationTimeout() throws ConfigInvalidException {
+    return getConfig()
+        .getTimeUnit("global", null, "mergeValidationTimeout", 0, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Returns what to do with a submit whose downstream check runs out of time.
+   *
+   * @return The configured policy, FAIL if not specified.
+   * @throws ConfigInvalidException
+   */
+  public MergeValidationTimeoutPolicy getMergeValidationTimeoutPolicy()
+      throws ConfigInvalidException {
+    return getConfig()
+        .getEnum("global", null, "mergeValidationTimeoutPolicy", MergeValidationTimeoutPolicy.FAIL);
+  }
+
+  public boolean isDownstreamSubmitRequirementEnabled() throws ConfigInvalidException {
+    return getConfig().getBoolean("global", "downstreamSubmitRequirement", false);
+  }
+
+  public boolean isCherryPickUpdateInPlace() throws ConfigInvalidException {
+    return getConfig().getBoolean("global", "cherryPickUpdateInPlace", false);
+  }
+
+  /**
+   * Returns how long an automerger task may take before the time spent in each of its steps is
+   * logged.
+   *
+   * @return The threshold in milliseconds, or 0 if slow tasks are not logged.
+   * @throws ConfigInvalidException
+   */
+  public long getSlowTaskThreshold() throws ConfigInvalidException {
+    return getConfig().getTimeUnit("global", null, "slowTaskThreshold", 0, TimeUnit.MILLISECONDS);
+  }
+
+  public boolean isCascadeInProcess() throws ConfigInvalidException {
+    return getConfig().getBoolean("global", "cascadeInProcess", false);
+  }
+
+  public boolean isTagCreatedChanges() throws ConfigInvalidException {
+    return getConfig().getBoolean("global", "tagCreatedChanges", true);
+  }
+
+  public boolean isTrialMergeEnabled() throws ConfigInvalidException {
+    return getConfig().getBoolean("global", "trialMerge", false);
+  }
+
   public short getMinAutomergeVote() throws ConfigInvalidException {
     return (short) getConfig().getInt("global", "minAutomergeVote", -2);
   }
@@ -0,0 +1,123 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.automerger;
+
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.entities.RefNames;
+import com.google.gerrit.extensions.restapi.MergeConflictException;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.gerrit.server.git.GitRepositoryManager;
+import com.google.inject.Inject;
+import com.google.inject.Module;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import java.io.IOException;
+import java.time.Duration;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * ConflictMemo remembers which upstream commits conflict with which downstream bases, so that
+ * repeated attempts to automerge them fail right away.
+ *
+ * <p>Entries are keyed by the upstream commit and the commit the downstream change would be based
+ * on, which is the base change or the tip of the downstream branch. Once either side moves, the key
+ * no longer matches and the merge is attempted again.
+ */
+@Singleton
+public class ConflictMemo {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+  static final String CACHE_NAME = "merge_conflicts";
+
+  private final GitRepositoryManager repoManager;
+  private final Cache<String, String> cache;
+
+  public static Module module() {
+    return new CacheModule() {
+      @Override
+      protected void configure() {
+        cache(CACHE_NAME, String.class, String.class)
+            .maximumWeight(10000)
+            .expireAfterWrite(Duration.ofDays(1));
+      }
+    };
+  }
+
+  @Inject
+  public ConflictMemo(
+      GitRepositoryManager repoManager, @Named(CACHE_NAME) Cache<String, String> cache) {
+    this.repoManager = repoManager;
+    this.cache = cache;
+  }
+
+  /**
+   * Get the commit a downstream change would be based on.
+   *
+   * @param project Project of the downstream change.
+   * @param downstreamBranch Branch the downstream change targets.
+   * @param baseRevision Revision of the base change, or null if there is none.
+   * @return The base revision, the tip of the downstream branch, or null if it cannot be read.
+   */
+  public String getBase(String project, String downstreamBranch, String baseRevision) {
+    if (baseRevision != null) {
+      return baseRevision;
+    }
+    try (Repository repo = repoManager.openRepository(Project.nameKey(project))) {
+      Ref tip = repo.exactRef(RefNames.fullName(downstreamBranch));
+      return tip != null ? tip.getObjectId().name() : null;
+    } catch (IOException e) {
+      logger.atFine().withCause(e).log("Unable to read tip of %s", downstreamBranch);
+      return null;
+    }
+  }
+
+  /**
+   * Fail if the upstream revision is known to conflict with the base.
+   *
+   * @param upstreamRevision Revision to automerge.
+   * @param base Commit the downstream change would be based on, as returned by getBase.
+   * @throws MergeConflictException with the original message if the pair is known to conflict.
+   */
+  public void check(String upstreamRevision, String base) throws MergeConflictException {
+    if (base == null) {
+      return;
+    }
+    String message = cache.getIfPresent(key(upstreamRevision, base));
+    if (message != null) {
+      logger.atFine().log("%s is known to conflict with %s", upstreamRevision, base);
+      throw new MergeConflictException(message);
+    }
+  }
+
+  /**
+   * Record that the upstream revision conflicts with the base.
+   *
+   * @param upstreamRevision Revision that was automerged.
+   * @param base Commit the downstream change was based on, as returned by getBase.
+   * @param message Message of the conflict.
+   */
+  public void put(String upstreamRevision, String base, String message) {
+    if (base != null) {
+      cache.put(key(upstreamRevision, base), Strings.nullToEmpty(message));
+    }
+  }
+
+  private static String key(String upstreamRevision, String base) {
+    return upstreamRevision + "," + base;
+  }
+}
@@ -0,0 +1,59 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.automerger;
+
+import com.google.inject.Singleton;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * DownstreamClaims makes sure only one task at a time creates or updates the downstream change of
+ * a revision on a branch.
+ *
+ * <p>Several events can automerge the same revision at once, for example a new patch set and a
+ * restore, and the check whether its downstream change exists runs before the change is created.
+ * A task claims each revision and downstream branch before handling it, and leaves the ones it
+ * cannot claim to the task that holds the claim. In a diamond, a branch receives the revision
+ * through two different upstream changes, so both of those downstream changes are still created.
+ */
+@Singleton
+public class DownstreamClaims {
+  private final Set<String> claims = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Claim the downstream change of the revision on the branch.
+   *
+   * @param revision Upstream revision to automerge.
+   * @param downstreamBranch Branch the downstream change targets.
+   * @return Whether the claim was taken, false if another task holds it.
+   */
+  public boolean claim(String revision, String downstreamBranch) {
+    return claims.add(key(revision, downstreamBranch));
+  }
+
+  /**
+   * Release a claim taken with claim.
+   *
+   * @param revision Upstream revision that was automerged.
+   * @param downstreamBranch Branch the downstream change targets.
+   */
+  public void release(String revision, String downstreamBranch) {
+    claims.remove(key(revision, downstreamBranch));
+  }
+
+  private static String key(String revision, String downstreamBranch) {
+    return revision + "," + downstreamBranch;
+  }
+}
@@ -37,6 +37,8 @@ import com.google.gerrit.extensions.restapi.AuthException;
 import com.google.gerrit.extensions.restapi.MergeConflictException;
 import com.google.gerrit.extensions.restapi.RestApiException;
 import com.google.gerrit.json.OutputFormat;
+import com.google.gerrit.metrics.Timer0;
+import com.google.gerrit.metrics.Timer1;
 import com.google.gerrit.server.CurrentUser;
 import com.google.gerrit.server.FanOutExecutor;
 import com.google.gerrit.server.submit.IntegrationConflictException;
@@ -46,17 +48,27 @@ import com.google.gson.Gson;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.OptionalInt;
+import java.util.Queue;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
 import org.eclipse.jgit.errors.ConfigInvalidException;
 
 /**
@@ -75,6 +87,12 @@ public class DownstreamCreator
   private static final String MERGE_CONFLICT_TAG = "autogenerated:MergeConflict";
   private static final String CURRENT = "current";
   private static final Gson GSON = OutputFormat.JSON_COMPACT.newGson();
+  // Number of threads, including the calling one, that update the downstreams of a change at once.
+  private static final int UPDATE_PARALLELISM = 4;
+  // Set while a task cascades downstream changes itself; events of changes it creates are ignored.
+  private static final ThreadLocal<Boolean> cascading = ThreadLocal.withInitial(() -> false);
+  // Account of the request context the task on this thread runs in.
+  private static final ThreadLocal<Account.Id> contextAccount = new ThreadLocal<>();
 
   private final GerritApi gApi;
   private final ConfigLoader config;
@@ -82,6 +100,13 @@ public class DownstreamCreator
   private final OneOffRequestContext oneOffRequestContext;
   private final Provider<CurrentUser> user;
   private final Provider<ChangeCreatorApi> changeCreator;
+  private final DownstreamIndex downstreamIndex;
+  private final CommitTopicCache commitTopicCache;
+  private final DownstreamVerdicts downstreamVerdicts;
+  private final DownstreamClaims downstreamClaims;
+  private final CascadeTracker cascadeTracker;
+  private final TaskRegistry taskRegistry;
+  private final AutomergerMetrics metrics;
 
   @Inject
   public DownstreamCreator(
@@ -90,7 +115,14 @@ public class DownstreamCreator
       OneOffRequestContext oneOffRequestContext,
       @FanOutExecutor ExecutorService executorService,
       Provider<CurrentUser> user,
-      Provider<ChangeCreatorApi> changeCreator
+      Provider<ChangeCreatorApi> changeCreator,
+      DownstreamIndex downstreamIndex,
+      CommitTopicCache commitTopicCache,
+      DownstreamVerdicts downstreamVerdicts,
+      DownstreamClaims downstreamClaims,
+      CascadeTracker cascadeTracker,
+      TaskRegistry taskRegistry,
+      AutomergerMetrics metrics
       ) {
     this.gApi = gApi;
     this.config = config;
@@ -98,6 +130,13 @@ public class DownstreamCreator
     this.executorService = executorService;
     this.user = user;
     this.changeCreator = changeCreator;
+    this.downstreamIndex = downstreamIndex;
+    this.commitTopicCache = commitTopicCache;
+    this.downstreamVerdicts = downstreamVerdicts;
+    this.downstreamClaims = downstreamClaims;
+    this.cascadeTracker = cascadeTracker;
+    this.taskRegistry = taskRegistry;
+    this.metrics = metrics;
   }
 
   /**
@@ -108,25 +147,27 @@ public class DownstreamCreator
   @Override
   public void onChangeAbandoned(ChangeAbandonedListener.Event event) {
     ChangeInfo change = deepCopy(event.getChange());
+    downstreamVerdicts.onAbandoned(change._number);
     CurrentUser user = this.user.get();
-    @SuppressWarnings("unused")
-    Future<?> ignored =
-        executorService.submit(() -> {
-          try {
-            onChangeAbandonedImpl(change, event.getRevision()._number, config.getContextUserId(user));
-          } catch (ConfigInvalidException | UnsupportedOperationException e) {
-            logger.atSevere().withCause(e).log(
-                "Automerger plugin failed onChangeAbandoned for %s", change.id);
-          }
-        });
+    submitTracked("change_abandoned", change._number, () -> {
+      try {
+        onChangeAbandonedImpl(change, event.getRevision()._number, config.getContextUserId(user));
+      } catch (ConfigInvalidException | UnsupportedOperationException e) {
+        logger.atSevere().withCause(e).log(
+            "Automerger plugin failed onChangeAbandoned for %s", change.id);
+      }
+    });
   }
 
   private void onChangeAbandonedImpl(ChangeInfo change, int revisionNumber, Account.Id accountId) {
-    try (ManualRequestContext ctx = oneOffRequestContext.openAs(accountId)) {
+    try (TaskContext ctx = openAs(accountId)) {
       String revision =
           gApi.changes().id(change._number).revision(revisionNumber).commit(false).commit;
       logger.atFine().log("Detected revision %s abandoned on %s.", revision, change.project);
-      abandonDownstream(change, revision, accountId);
+      abandonDownstream(
+          change, new UpstreamRevision(revision, change._number, revisionNumber), accountId);
+    } catch (TaskCancelledException e) {
+      throw e;
     } catch (Exception e) {
       logger.atSevere().withCause(e).log(
           "Automerger plugin failed onChangeAbandoned for %s", change.id);
@@ -141,10 +182,11 @@ public class DownstreamCreator
   @Override
   public void onTopicEdited(TopicEditedListener.Event event) {
     ChangeInfo change = deepCopy(event.getChange());
+    downstreamVerdicts.invalidateChange(change._number);
+    downstreamVerdicts.invalidateMissing(change.topic, change.branch);
     String oldTopic = event.getOldTopic();
     CurrentUser user = this.user.get();
-    @SuppressWarnings("unused")
-    Future<?> ignored = executorService.submit(() -> {
+    submitTracked("topic_edited", change._number, () -> {
       try {
         onTopicEditedImpl(change, oldTopic, config.getContextUserId(user));
       } catch (ConfigInvalidException | UnsupportedOperationException e) {
@@ -155,7 +197,8 @@ public class DownstreamCreator
   }
 
   private void onTopicEditedImpl(ChangeInfo eventChange, String oldTopic, Account.Id accountId) {
-    try (ManualRequestContext ctx = oneOffRequestContext.openAs(accountId)) {
+    commitTopicCache.invalidateChange(eventChange._number);
+    try (TaskContext ctx = openAs(accountId)) {
       // We have to re-query for this in order to include the current revision
       ChangeInfo change;
       try {
@@ -168,7 +211,7 @@ public class DownstreamCreator
             "Automerger could not get change with current revision for onTopicEdited.");
         return;
       }
-      String revision = change.currentRevision;
+      UpstreamRevision upstream = UpstreamRevision.fromChange(change);
       Set<String> downstreamBranches;
       try {
         downstreamBranches = config.getDownstreamBranches(change.branch, change.project);
@@ -176,6 +219,7 @@ public class DownstreamCreator
         logger.atSevere().withCause(e).log("Failed to edit downstream topics of %s", change.id);
         return;
       }
+      TaskTrace.addBranches(downstreamBranches);
 
       if (downstreamBranches.isEmpty()) {
         logger.atFine().log(
@@ -198,19 +242,26 @@ public class DownstreamCreator
               "Failed to prevent setting empty topic for automerger plugin.");
         }
       } else {
-        for (String downstreamBranch : downstreamBranches) {
-          try {
-            List<Integer> existingDownstream =
-                getExistingChangesOnBranch(revision, oldTopic, downstreamBranch, accountId);
-            for (Integer changeNumber : existingDownstream) {
-              logger.atFine().log("Setting topic %s on %s", change.topic, changeNumber);
-              gApi.changes().id(changeNumber).topic(change.topic);
-            }
-          } catch (RestApiException | InvalidQueryParameterException e) {
-            logger.atSevere().withCause(e).log("Failed to edit downstream topics of %s", change.id);
-          }
+        try {
+          List<Integer> existingDownstream =
+              getDownstreamsInTopic(upstream, oldTopic, downstreamBranches, accountId);
+          String newTopic = change.topic;
+          updateInParallel(
+              "set_topic",
+              change,
+              existingDownstream,
+              accountId,
+              changeNumber -> {
+                logger.atFine().log("Setting topic %s on %s", newTopic, changeNumber);
+                gApi.changes().id(changeNumber).topic(newTopic);
+                commitTopicCache.invalidateChange(changeNumber);
+              });
+        } catch (RestApiException | InvalidQueryParameterException e) {
+          logger.atSevere().withCause(e).log("Failed to edit downstream topics of %s", change.id);
         }
       }
+    } catch (TaskCancelledException e) {
+      throw e;
     } catch (Exception e) {
       logger.atSevere().withCause(e).log(
           "Automerger plugin failed onTopicEdited for %s", eventChange.id);
@@ -234,8 +285,7 @@ public class DownstreamCreator
     ChangeInfo change = deepCopy(event.getChange());
     RevisionInfo eventRevision = deepCopy(event.getRevision());
     CurrentUser user = this.user.get();
-    @SuppressWarnings("unused")
-    Future<?> ignored = executorService.submit(() -> {
+    submitTracked("comment_added", change._number, () -> {
       try {
         onCommentAddedImpl(change, eventRevision, config.getContextUserId(user));
       } catch (ConfigInvalidException | UnsupportedOperationException e) {
@@ -246,8 +296,7 @@ public class DownstreamCreator
   }
 
   private void onCommentAddedImpl(ChangeInfo change, RevisionInfo eventRevision, Account.Id accountId) {
-    try (ManualRequestContext ctx = oneOffRequestContext.openAs(accountId)) {
-      String revision = gApi.changes().id(change._number).current().commit(false).commit;
+    try (TaskContext ctx = openAs(accountId)) {
       Set<String> downstreamBranches;
       downstreamBranches = config.getDownstreamBranches(change.branch, change.project);
 
@@ -257,16 +306,21 @@ public class DownstreamCreator
         return;
       }
 
-      Map<String, LabelInfo> labels =
+      // Fetch the current revision and the labels together, so the upstream patch set is only
+      // resolved once for all downstream branches.
+      ChangeInfo currentChange =
           gApi.changes()
               .id(change._number)
-              .get(EnumSet.of(ListChangesOption.DETAILED_LABELS))
-              .labels;
+              .get(
+                  EnumSet.of(
+                      ListChangesOption.CURRENT_REVISION, ListChangesOption.DETAILED_LABELS));
+      UpstreamRevision upstream = UpstreamRevision.fromChange(currentChange);
+      Map<String, LabelInfo> labels = currentChange.labels;
 
       for (String downstreamBranch : downstreamBranches) {
         try {
           List<Integer> existingDownstream =
-              getExistingChangesOnBranch(revision, change.topic, downstreamBranch, accountId);
+              getExistingChangesOnBranch(upstream, change.topic, downstreamBranch, accountId);
           for (Integer changeNumber : existingDownstream) {
             ChangeInfo downstreamChange =
                 gApi.changes().id(changeNumber).get(EnumSet.of(ListChangesOption.CURRENT_REVISION));
@@ -289,6 +343,8 @@ public class DownstreamCreator
               "Exception when updating downstream votes of %s", change.id);
         }
       }
+    } catch (TaskCancelledException e) {
+      throw e;
     } catch (Exception e) {
       logger.atSevere().withCause(e).log(
           "Automerger plugin failed onCommentAdded for %s", change.id);
@@ -303,10 +359,10 @@ public class DownstreamCreator
   @Override
   public void onChangeRestored(ChangeRestoredListener.Event event) {
     ChangeInfo change = deepCopy(event.getChange());
+    downstreamVerdicts.invalidateChange(change._number);
     RevisionInfo revision = deepCopy(event.getRevision());
     CurrentUser user = this.user.get();
-    @SuppressWarnings("unused")
-    Future<?> ignored = executorService.submit(() -> {
+    submitTracked("change_restored", change._number, () -> {
       try {
         onChangeRestoredImpl(change, revision, config.getContextUserId(user));
       } catch (ConfigInvalidException | UnsupportedOperationException e) {
@@ -317,8 +373,10 @@ public class DownstreamCreator
   }
 
   private void onChangeRestoredImpl(ChangeInfo change, RevisionInfo revision, Account.Id accountId) {
-    try (ManualRequestContext ctx = oneOffRequestContext.openAs(accountId)) {
+    try (TaskContext ctx = openAs(accountId)) {
       automergeChanges(change, revision, accountId);
+    } catch (TaskCancelledException e) {
+      throw e;
     } catch (Exception e) {
       logger.atSevere().withCause(e).log(
           "Automerger plugin failed onChangeRestored for %s", change.id);
@@ -332,12 +390,21 @@ public class DownstreamCreator
    */
   @Override
   public void onRevisionCreated(RevisionCreatedListener.Event event) {
+    // A new patch set of a downstream may no longer merge its upstream revision, and a new change
+    // may be a downstream that was uploaded by hand.
+    downstreamVerdicts.invalidateChange(event.getChange()._number);
+    downstreamVerdicts.invalidateMissing(event.getChange().topic, event.getChange().branch);
+    if (cascading.get()) {
+      // The change was created by this thread, which automerges it as part of the cascade.
+      logger.atFine().log(
+          "Ignoring revision created on %s during cascade", event.getChange()._number);
+      return;
+    }
     ChangeInfo change = deepCopy(event.getChange());
     RevisionInfo revision = deepCopy(event.getRevision());
     CurrentUser user = this.user.get();
 
-    @SuppressWarnings("unused")
-    Future<?> ignored = executorService.submit(() -> {
+    submitTracked("revision_created", change._number, () -> {
       try {
         onRevisionCreatedImpl(change, revision, config.getContextUserId(user));
       } catch (ConfigInvalidException | UnsupportedOperationException e) {
@@ -348,9 +415,12 @@ public class DownstreamCreator
   }
 
   public void onRevisionCreatedImpl(ChangeInfo change, RevisionInfo revision, Account.Id accountId) {
-    try (ManualRequestContext ctx = oneOffRequestContext.openAs(accountId)) {
+    commitTopicCache.invalidateChange(change._number);
+    try (TaskContext ctx = openAs(accountId)) {
       automergeChanges(change, revision, accountId);
-    } catch (Exception e){
+    } catch (TaskCancelledException e) {
+      throw e;
+    } catch (Exception e) {
       logger.atSevere().withCause(e).log(
           "Automerger plugin failed onRevisionCreated for %s", change.id);
     }
@@ -358,11 +428,12 @@ public class DownstreamCreator
 
   public String getOrSetTopic(int sourceId, String topic, Account.Id accountId)
       throws RestApiException {
-    try (ManualRequestContext ctx = oneOffRequestContext.openAs(accountId)) {
+    try (TaskContext ctx = openAs(accountId)) {
       if (isNullOrEmpty(topic)) {
         topic = "am-" + UUID.randomUUID();
         logger.atFine().log("Setting original change %s topic to %s", sourceId, topic);
         gApi.changes().id(sourceId).topic(topic);
+        commitTopicCache.invalidateChange(sourceId);
       }
       return topic;
     }
@@ -381,18 +452,43 @@ public class DownstreamCreator
   public void createChangesAndHandleConflicts(MultipleDownstreamChangeInput mdsChangeInput, Account.Id accountId)
       throws RestApiException, ConfigInvalidException, InvalidQueryParameterException,
           StorageException {
-    try (ManualRequestContext ctx = oneOffRequestContext.openAs(accountId)) {
+    createChangesAndHandleConflicts(mdsChangeInput, accountId, new ArrayList<>());
+  }
+
+  private void createChangesAndHandleConflicts(
+      MultipleDownstreamChangeInput mdsChangeInput,
+      Account.Id accountId,
+      List<Integer> newDownstreamRevisions)
+      throws RestApiException, ConfigInvalidException, InvalidQueryParameterException,
+          StorageException {
+    try (TaskContext ctx = openAs(accountId)) {
       ReviewInput reviewInput = new ReviewInput();
       Map<String, Short> labels = new HashMap<>();
       try {
-        createDownstreamChanges(mdsChangeInput, accountId);
+        List<String> handledElsewhere = new ArrayList<>();
+        createDownstreamChanges(
+            mdsChangeInput, accountId, newDownstreamRevisions, handledElsewhere);
 
+        List<String> handledBranches = new ArrayList<>(mdsChangeInput.dsBranchMap.keySet());
+        handledBranches.removeAll(handledElsewhere);
+        if (handledBranches.isEmpty() && !handledElsewhere.isEmpty()) {
+          // The tasks handling the other branches report on them.
+          logger.atFine().log(
+              "All downstreams of %s are handled by other tasks", mdsChangeInput.changeNumber);
+          return;
+        }
         reviewInput.message =
             "Automerging change "
                 + mdsChangeInput.changeNumber
                 + " to "
-                + Joiner.on(", ").join(mdsChangeInput.dsBranchMap.keySet())
+                + Joiner.on(", ").join(handledBranches)
                 + " succeeded!";
+        if (!handledElsewhere.isEmpty()) {
+          reviewInput.message +=
+              "\n\nAutomerging to "
+                  + Joiner.on(", ").join(handledElsewhere)
+                  + " is handled by another task.";
+        }
         reviewInput.notify = NotifyHandling.NONE;
       } catch (FailedMergeException e) {
         reviewInput.message = e.getDisplayString();
@@ -407,14 +503,92 @@ public class DownstreamCreator
 
       // Make the vote on the original change
       ChangeInfo originalChange =
-          getOriginalChange(mdsChangeInput.changeNumber, mdsChangeInput.currentRevision);
+          getOriginalChange(
+              mdsChangeInput.changeNumber, mdsChangeInput.currentRevision, mdsChangeInput.topic);
       // if this fails, i.e. -2 is restricted, catch it and still post message without a vote.
-      try {
-        gApi.changes().id(originalChange._number).revision(CURRENT).review(reviewInput);
-      } catch (AuthException e) {
-        reviewInput.labels = null;
-        gApi.changes().id(originalChange._number).revision(CURRENT).review(reviewInput);
+      try (TaskTrace.Step step = TaskTrace.step("review")) {
+        try {
+          gApi.changes().id(originalChange._number).revision(CURRENT).review(reviewInput);
+        } catch (AuthException e) {
+          reviewInput.labels = null;
+          gApi.changes().id(originalChange._number).revision(CURRENT).review(reviewInput);
+        }
+      }
+    }
+  }
+
+  /**
+   * Queue a listener task so that it is registered until it is done, its time in the queue and its
+   * run time are reported, and its steps are traced.
+   */
+  private void submitTracked(String eventType, int changeNumber, Runnable task) {
+    TaskRegistry.Task registered = taskRegistry.register(eventType, changeNumber);
+    try {
+      @SuppressWarnings("unused")
+      Future<?> ignored = executorService.submit(tracked(registered, task));
+    } catch (RejectedExecutionException e) {
+      // The task will never run, so it must not stay listed as queued.
+      taskRegistry.finished(registered);
+      throw e;
+    }
+  }
+
+  private Runnable tracked(TaskRegistry.Task registered, Runnable task) {
+    String eventType = registered.eventType;
+    int changeNumber = registered.changeNumber;
+    long queuedNanos = System.nanoTime();
+    return () -> {
+      metrics.listenerQueueWait.record(
+          eventType, System.nanoTime() - queuedNanos, TimeUnit.NANOSECONDS);
+      if (!taskRegistry.started(registered)) {
+        logger.atInfo().log("Skipping cancelled %s of change %s", eventType, changeNumber);
+        return;
+      }
+      try (Timer1.Context<String> ctx = metrics.listenerLatency.start(eventType);
+          TaskTrace trace = TaskTrace.start(registered, getSlowTaskThreshold())) {
+        task.run();
+      } catch (TaskCancelledException e) {
+        logger.atInfo().log("Stopped cancelled %s of change %s", eventType, changeNumber);
+      } finally {
+        taskRegistry.finished(registered);
+      }
+    };
+  }
+
+  /**
+   * Open a request context as the given account, or reuse the one the task on this thread already
+   * runs in, so that a task builds its user once instead of in every helper.
+   */
+  private TaskContext openAs(Account.Id accountId) {
+    Account.Id previous = contextAccount.get();
+    if (accountId != null && accountId.equals(previous)) {
+      metrics.requestContexts.increment("reused");
+      return () -> {};
+    }
+    metrics.requestContexts.increment("opened");
+    ManualRequestContext ctx = oneOffRequestContext.openAs(accountId);
+    contextAccount.set(accountId);
+    return () -> {
+      if (previous != null) {
+        contextAccount.set(previous);
+      } else {
+        contextAccount.remove();
       }
+      ctx.close();
+    };
+  }
+
+  /** A request context of a task, which does not throw on close. */
+  private interface TaskContext extends AutoCloseable {
+    @Override
+    void close();
+  }
+
+  private long getSlowTaskThreshold() {
+    try {
+      return config.getSlowTaskThreshold();
+    } catch (ConfigInvalidException e) {
+      return 0;
     }
   }
 
@@ -428,78 +602,201 @@ public class DownstreamCreator
    *
    * @param mdsChangeInput Input containing the downstream branch map and source change ID.
    * @param accountId Account ID to authorize Gerrit API calls.
+   * @param newDownstreamRevisions Collects the downstream changes that got a new revision.
+   * @param handledElsewhere Collects the branches whose downstream another task is handling.
    * @throws RestApiException Throws if we fail a REST API call.
    * @throws FailedMergeException Throws if we get a merge conflict when merging downstream.
    * @throws ConfigInvalidException Throws if we get a malformed config file
    * @throws InvalidQueryParameterException Throws if we attempt to add an invalid value to query.
    * @throws StorageException Throws if we fail to open the request context
    */
-  private void createDownstreamChanges(MultipleDownstreamChangeInput mdsChangeInput, Account.Id accountId)
+  private void createDownstreamChanges(
+      MultipleDownstreamChangeInput mdsChangeInput,
+      Account.Id accountId,
+      List<Integer> newDownstreamRevisions,
+      List<String> handledElsewhere)
       throws RestApiException, FailedMergeException, ConfigInvalidException,
           InvalidQueryParameterException, StorageException {
-    try (ManualRequestContext ctx = oneOffRequestContext.openAs(accountId)) {
+    // Branches whose downstream this task claimed, released once it is done
+    List<String> claimedBranches = new ArrayList<>();
+    try (TaskContext ctx = openAs(accountId)) {
       // Map from branch to error message
       Map<String, String> failedMergeBranchMap = new TreeMap<>();
+      ChangeCreatorApi creator = changeCreator.get();
+      CascadeTracker.Hop hop =
+          cascadeTracker.start(mdsChangeInput.changeNumber, mdsChangeInput.branch);
+      // Downstream changes that were created rather than updated, tagged once all are done
+      List<ChangeInfo> createdChanges = new ArrayList<>();
+
+      // Resolve the upstream patch sets once for all downstream branches.
+      UpstreamRevision currentUpstream =
+          new UpstreamRevision(
+              mdsChangeInput.currentRevision,
+              mdsChangeInput.changeNumber,
+              mdsChangeInput.patchsetNumber);
+      UpstreamRevision obsoleteUpstream = null;
+      if (mdsChangeInput.obsoleteRevision != null) {
+        obsoleteUpstream =
+            new UpstreamRevision(
+                mdsChangeInput.obsoleteRevision,
+                mdsChangeInput.changeNumber,
+                mdsChangeInput.obsoletePatchsetNumber);
+      }
+
+      // Downstream change of the current patch set per branch, and whether every branch is known
+      Map<String, Integer> downstreamChanges = new HashMap<>();
+      boolean allDownstreamsKnown = mdsChangeInput.allDownstreamBranches;
+      ChangeMode changeMode = config.changeMode();
+
+      try {
+        List<Integer> existingDownstream;
+        for (String downstreamBranch : mdsChangeInput.dsBranchMap.keySet()) {
+          if (!downstreamClaims.claim(mdsChangeInput.currentRevision, downstreamBranch)) {
+            logger.atFine().log(
+                "Downstream of %s on %s is already being handled",
+                mdsChangeInput.currentRevision, downstreamBranch);
+            allDownstreamsKnown = false;
+            handledElsewhere.add(downstreamBranch);
+            continue;
+          }
+          claimedBranches.add(downstreamBranch);
+          // If there are existing downstream changes, update them
+          // Otherwise, create them.
+          boolean createDownstreams = true;
+          if (obsoleteUpstream != null) {
+            existingDownstream =
+                getExistingChangesOnBranch(
+                    obsoleteUpstream, mdsChangeInput.topic, downstreamBranch, accountId);
+            if (!existingDownstream.isEmpty()) {
+              logger.atFine().log(
+                  "Attempting to update downstream merge of %s on branch %s",
+                  mdsChangeInput.currentRevision, downstreamBranch);
+              // existingDownstream should almost always be of length one, but
+              // it's possible to construct it so that it's not
+              for (Integer dsChangeNumber : existingDownstream) {
+                try {
+                  UpdateDownstreamChangeInput updateDownstreamChangeInput =
+                      new UpdateDownstreamChangeInput();
+                  updateDownstreamChangeInput.upstreamRevision = mdsChangeInput.currentRevision;
+                  updateDownstreamChangeInput.upstreamSubject = mdsChangeInput.subject;
+                  updateDownstreamChangeInput.downstreamChangeNumber = dsChangeNumber;
+                  updateDownstreamChangeInput.doChange =
+                      mdsChangeInput.dsBranchMap.get(downstreamBranch);
+                  updateDownstreamChangeInput.upstreamChangeNumber = mdsChangeInput.changeNumber;
+                  updateDownstreamChangeInput.patchSetNumber = mdsChangeInput.patchsetNumber;
+                  updateDownstreamChangeInput.project = mdsChangeInput.project;
+                  updateDownstreamChangeInput.downstreamBranch = downstreamBranch;
+                  updateDownstreamChangeInput.topic = mdsChangeInput.topic;
 
-      List<Integer> existingDownstream;
-      for (String downstreamBranch : mdsChangeInput.dsBranchMap.keySet()) {
-        // If there are existing downstream changes, update them
-        // Otherwise, create them.
-        boolean createDownstreams = true;
-        if (mdsChangeInput.obsoleteRevision != null) {
-          existingDownstream =
-              getExistingChangesOnBranch(
-                  mdsChangeInput.obsoleteRevision, mdsChangeInput.topic, downstreamBranch, accountId);
-          if (!existingDownstream.isEmpty()) {
+                  ChangeInfo updatedDownstream;
+                  try (Timer1.Context<String> apiCtx =
+                          metrics.gerritApiLatency.start("update_downstream");
+                      TaskTrace.Step step = TaskTrace.step("update")) {
+                    updatedDownstream = creator.update(updateDownstreamChangeInput);
+                  }
+                  countMerge(
+                      mdsChangeInput, downstreamBranch, updateDownstreamChangeInput.doChange);
+                  downstreamIndex.remove(obsoleteUpstream, downstreamBranch);
+                  if (updatedDownstream != null) {
+                    newDownstreamRevisions.add(updatedDownstream._number);
+                    cascadeTracker.recordHop(
+                        hop, mdsChangeInput.branch, downstreamBranch, updatedDownstream._number);
+                    if (updatedDownstream._number != dsChangeNumber) {
+                      createdChanges.add(updatedDownstream);
+                    }
+                    downstreamIndex.put(
+                        currentUpstream, downstreamBranch, updatedDownstream._number);
+                    downstreamChanges.put(downstreamBranch, updatedDownstream._number);
+                  } else if (!isSkippedCherryPick(
+                      changeMode, updateDownstreamChangeInput.doChange)) {
+                    allDownstreamsKnown = false;
+                  }
+                  createDownstreams = false;
+                } catch (MergeConflictException | IntegrationConflictException e) {
+                  failedMergeBranchMap.put(downstreamBranch, e.getMessage());
+                  metrics.mergeResults.increment(
+                      branchPair(mdsChangeInput, downstreamBranch), "conflict");
+                  logger.atFine().log(
+                      "Abandoning existing, obsolete %s due to merge conflict.", dsChangeNumber);
+                  abandonChange(dsChangeNumber);
+                  downstreamIndex.remove(obsoleteUpstream, downstreamBranch);
+                }
+              }
+            }
+          }
+          if (createDownstreams) {
             logger.atFine().log(
-                "Attempting to update downstream merge of %s on branch %s",
+                "Attempting to create downstream change of %s on branch %s",
                 mdsChangeInput.currentRevision, downstreamBranch);
-            // existingDownstream should almost always be of length one, but
-            // it's possible to construct it so that it's not
-            for (Integer dsChangeNumber : existingDownstream) {
-              try {
-                UpdateDownstreamChangeInput updateDownstreamChangeInput = new UpdateDownstreamChangeInput();
-                updateDownstreamChangeInput.upstreamRevision = mdsChangeInput.currentRevision;
-                updateDownstreamChangeInput.upstreamSubject = mdsChangeInput.subject;
-                updateDownstreamChangeInput.downstreamChangeNumber = dsChangeNumber;
-                updateDownstreamChangeInput.doChange = mdsChangeInput.dsBranchMap.get(downstreamBranch);
-                updateDownstreamChangeInput.upstreamChangeNumber = mdsChangeInput.changeNumber;
-                updateDownstreamChangeInput.patchSetNumber = mdsChangeInput.patchsetNumber;
-                updateDownstreamChangeInput.downstreamBranch = downstreamBranch;
-                updateDownstreamChangeInput.topic = mdsChangeInput.topic;
-
-                changeCreator.get().update(updateDownstreamChangeInput);
-                createDownstreams = false;
-              } catch (MergeConflictException | IntegrationConflictException e) {
-                failedMergeBranchMap.put(downstreamBranch, e.getMessage());
-                logger.atFine().log(
-                    "Abandoning existing, obsolete %s due to merge conflict.", dsChangeNumber);
-                abandonChange(dsChangeNumber);
+            SingleDownstreamChangeInput sdsChangeInput = new SingleDownstreamChangeInput();
+            sdsChangeInput.currentRevision = mdsChangeInput.currentRevision;
+            sdsChangeInput.changeNumber = mdsChangeInput.changeNumber;
+            sdsChangeInput.patchsetNumber = mdsChangeInput.patchsetNumber;
+            sdsChangeInput.project = mdsChangeInput.project;
+            sdsChangeInput.topic = mdsChangeInput.topic;
+            sdsChangeInput.subject = mdsChangeInput.subject;
+            sdsChangeInput.downstreamBranch = downstreamBranch;
+            sdsChangeInput.doChange = mdsChangeInput.dsBranchMap.get(downstreamBranch);
+            try {
+              ChangeInfo downstreamChange =
+                  createSingleDownstreamChange(creator, sdsChangeInput, accountId);
+              if (downstreamChange != null
+                  || isSkippedCherryPick(changeMode, sdsChangeInput.doChange)) {
+                countMerge(mdsChangeInput, downstreamBranch, sdsChangeInput.doChange);
+              }
+              if (downstreamChange != null) {
+                newDownstreamRevisions.add(downstreamChange._number);
+                cascadeTracker.recordHop(
+                    hop, mdsChangeInput.branch, downstreamBranch, downstreamChange._number);
+                createdChanges.add(downstreamChange);
+                downstreamChanges.put(downstreamBranch, downstreamChange._number);
+              } else if (!isSkippedCherryPick(changeMode, sdsChangeInput.doChange)) {
+                // The downstream already existed; it is only known if it is in the index.
+                Integer indexedDownstream =
+                    downstreamIndex.getDownstream(currentUpstream, downstreamBranch, changeMode);
+                if (indexedDownstream != null) {
+                  downstreamChanges.put(downstreamBranch, indexedDownstream);
+                } else {
+                  allDownstreamsKnown = false;
+                }
               }
+            } catch (MergeConflictException | IntegrationConflictException e) {
+              failedMergeBranchMap.put(downstreamBranch, e.getMessage());
+              metrics.mergeResults.increment(
+                  branchPair(mdsChangeInput, downstreamBranch), "conflict");
             }
           }
         }
-        if (createDownstreams) {
-          logger.atFine().log(
-              "Attempting to create downstream change of %s on branch %s",
-              mdsChangeInput.currentRevision, downstreamBranch);
-          SingleDownstreamChangeInput sdsChangeInput = new SingleDownstreamChangeInput();
-          sdsChangeInput.currentRevision = mdsChangeInput.currentRevision;
-          sdsChangeInput.changeNumber = mdsChangeInput.changeNumber;
-          sdsChangeInput.patchsetNumber = mdsChangeInput.patchsetNumber;
-          sdsChangeInput.project = mdsChangeInput.project;
-          sdsChangeInput.topic = mdsChangeInput.topic;
-          sdsChangeInput.subject = mdsChangeInput.subject;
-          sdsChangeInput.downstreamBranch = downstreamBranch;
-          sdsChangeInput.doChange = mdsChangeInput.dsBranchMap.get(downstreamBranch);
-          try {
-            createSingleDownstreamChange(sdsChangeInput, accountId);
-          } catch (MergeConflictException | IntegrationConflictException e) {
-            failedMergeBranchMap.put(downstreamBranch, e.getMessage());
+      } catch (Exception e) {
+        // Keep the skip hashtags of the branches handled before the failure.
+        try {
+          creator.flush();
+        } catch (RestApiException | RuntimeException flushFailure) {
+          e.addSuppressed(flushFailure);
+        }
+        throw e;
+      }
+
+      creator.flush();
+      if (config.isTagCreatedChanges()) {
+        try (TaskTrace.Step step = TaskTrace.step("review")) {
+          for (ChangeInfo createdChange : createdChanges) {
+            ChangeUtils.tagChange(gApi, createdChange, "Automerger change created!");
           }
         }
       }
 
+      if (allDownstreamsKnown) {
+        downstreamVerdicts.put(
+            mdsChangeInput.project,
+            currentUpstream,
+            mdsChangeInput.topic,
+            downstreamChanges,
+            failedMergeBranchMap.keySet());
+      } else {
+        downstreamVerdicts.invalidateChange(mdsChangeInput.changeNumber);
+      }
+
       if (!failedMergeBranchMap.isEmpty()) {
         String conflictMessage = config.getConflictMessage();
         if (mdsChangeInput.project.equals(config.getManifestProject())) {
@@ -515,12 +812,17 @@ public class DownstreamCreator
             conflictMessage,
             mdsChangeInput.topic);
       }
+    } finally {
+      for (String downstreamBranch : claimedBranches) {
+        downstreamClaims.release(mdsChangeInput.currentRevision, downstreamBranch);
+      }
     }
   }
 
   /**
    * Get change numbers of the immediately downstream changes of the revision on the branch.
    *
+   * @param upstream Upstream revision, resolved once by the caller for all branches.
    * @param topic Topic of the original change.
    * @param downstreamBranch Branch to check for existing automerger CLs.
    * @param accountId Account ID to authorize Gerrit API calls.
@@ -531,17 +833,27 @@ public class DownstreamCreator
    * @throws StorageException Throws if we fail to open the request context
    */
   private List<Integer> getExistingChangesOnBranch(
-      String upstreamRevision, String topic, String downstreamBranch, Account.Id accountId)
+      UpstreamRevision upstream, String topic, String downstreamBranch, Account.Id accountId)
       throws RestApiException, InvalidQueryParameterException, StorageException,
           ConfigInvalidException {
-    try (ManualRequestContext ctx = oneOffRequestContext.openAs(accountId)) {
+    try (TaskContext ctx = openAs(accountId);
+        TaskTrace.Step step = TaskTrace.step("existing_downstream_lookup")) {
       List<Integer> downstreamChangeNumbers = new ArrayList<>();
-      List<ChangeInfo> changes = ChangeUtils.getChangesInTopicAndBranch(gApi, topic, downstreamBranch);
-
       ChangeMode changeMode = config.changeMode();
+
+      Integer indexedDownstream =
+          downstreamIndex.getDownstream(upstream, downstreamBranch, changeMode);
+      if (indexedDownstream != null) {
+        downstreamChangeNumbers.add(indexedDownstream);
+        return downstreamChangeNumbers;
+      }
+
+      List<ChangeInfo> changes = ChangeUtils.getChangesInTopicAndBranch(gApi, topic, downstreamBranch);
+      commitTopicCache.putAll(changes);
       for (ChangeInfo change : changes) {
-        if(ChangeUtils.isDownstreamChange(gApi, upstreamRevision, change, changeMode)) {
+        if(ChangeUtils.isDownstreamChange(upstream, change, changeMode)) {
           downstreamChangeNumbers.add(change._number);
+          downstreamIndex.put(upstream, downstreamBranch, change._number);
         }
       }
 
@@ -552,6 +864,7 @@ public class DownstreamCreator
   /**
    * Create a single downstream merge.
    *
+   * @param creator Creator used for all downstreams of the upstream change.
    * @param sdsChangeInput Input containing metadata for the merge.
    * @param accountId Account ID to authorize Gerrit API calls.
    * @throws RestApiException
@@ -559,28 +872,135 @@ public class DownstreamCreator
    * @throws InvalidQueryParameterException
    * @throws StorageException
    */
-  private void createSingleDownstreamChange(SingleDownstreamChangeInput sdsChangeInput, Account.Id accountId)
+  private ChangeInfo createSingleDownstreamChange(
+      ChangeCreatorApi creator, SingleDownstreamChangeInput sdsChangeInput, Account.Id accountId)
       throws RestApiException, ConfigInvalidException, InvalidQueryParameterException,
           StorageException {
-    try (ManualRequestContext ctx = oneOffRequestContext.openAs(accountId)) {
+    try (TaskContext ctx = openAs(accountId)) {
       String currentTopic = getOrSetTopic(sdsChangeInput.changeNumber, sdsChangeInput.topic, accountId);
 
-      ChangeApi downstreamChange = changeCreator.get().create(sdsChangeInput, currentTopic);
+      ChangeInfo downstreamChange;
+      try (Timer1.Context<String> apiCtx = metrics.gerritApiLatency.start("create_downstream");
+          TaskTrace.Step step = TaskTrace.step("create")) {
+        downstreamChange = creator.create(sdsChangeInput, currentTopic);
+      }
       if(downstreamChange != null) {
-        ChangeUtils.tagChange(gApi, downstreamChange.get(), "Automerger change created!");
+        downstreamIndex.put(
+            new UpstreamRevision(
+                sdsChangeInput.currentRevision,
+                sdsChangeInput.changeNumber,
+                sdsChangeInput.patchsetNumber),
+            sdsChangeInput.downstreamBranch,
+            downstreamChange._number);
       }
+      return downstreamChange;
     }
   }
 
+  private static boolean isSkippedCherryPick(ChangeMode changeMode, boolean doChange) {
+    // Skipped cherry-picks only tag the upstream change, MergeValidator accepts them as is.
+    return changeMode == ChangeMode.CHERRY_PICK && !doChange;
+  }
+
   private void automergeChanges(ChangeInfo change, RevisionInfo revisionInfo, Account.Id accountId)
       throws RestApiException, IOException, ConfigInvalidException, InvalidQueryParameterException,
           StorageException {
+    if (!config.isCascadeInProcess() || cascading.get()) {
+      automergeChange(change, revisionInfo, accountId, new ArrayList<>());
+      return;
+    }
+
+    // Walk the downstream changes hop by hop, so that every change is automerged after the
+    // change it was created from.
+    Set<Integer> visited = new HashSet<>();
+    visited.add(change._number);
+    Deque<Integer> pending = new ArrayDeque<>();
+    cascading.set(true);
+    try {
+      List<Integer> newDownstreamRevisions = new ArrayList<>();
+      try {
+        automergeChange(change, revisionInfo, accountId, newDownstreamRevisions);
+      } finally {
+        pending.addAll(newDownstreamRevisions);
+      }
+      while (!pending.isEmpty()) {
+        int changeNumber = pending.remove();
+        if (!visited.add(changeNumber)) {
+          continue;
+        }
+        commitTopicCache.invalidateChange(changeNumber);
+        newDownstreamRevisions.clear();
+        try {
+          ChangeInfo downstreamChange =
+              gApi.changes()
+                  .id(changeNumber)
+                  .get(EnumSet.of(ListChangesOption.CURRENT_REVISION));
+          automergeChange(
+              downstreamChange,
+              downstreamChange.revisions.get(downstreamChange.currentRevision),
+              accountId,
+              newDownstreamRevisions);
+        } catch (TaskCancelledException e) {
+          throw e;
+        } catch (Exception e) {
+          logger.atSevere().withCause(e).log(
+              "Automerger failed to cascade %s from %s", changeNumber, change.id);
+          handOff(changeNumber, accountId);
+        } finally {
+          pending.addAll(newDownstreamRevisions);
+        }
+      }
+    } catch (TaskCancelledException e) {
+      // A cancelled cascade stops here, its remaining hops are not handed off.
+      pending.clear();
+      throw e;
+    } finally {
+      cascading.remove();
+      // The events of these changes were ignored, so hops the cascade did not reach are left to
+      // normal event handling.
+      for (int changeNumber : pending) {
+        if (visited.add(changeNumber)) {
+          handOff(changeNumber, accountId);
+        }
+      }
+    }
+  }
+
+  /**
+   * Automerge a change of a cascade in a task of its own, as if its revision created event had not
+   * been ignored.
+   */
+  private void handOff(int changeNumber, Account.Id accountId) {
+    submitTracked("revision_created", changeNumber, () -> {
+      try (TaskContext ctx = openAs(accountId)) {
+        ChangeInfo change =
+            gApi.changes().id(changeNumber).get(EnumSet.of(ListChangesOption.CURRENT_REVISION));
+        onRevisionCreatedImpl(change, change.revisions.get(change.currentRevision), accountId);
+      } catch (RestApiException | StorageException e) {
+        logger.atSevere().withCause(e).log(
+            "Automerger plugin failed onRevisionCreated for %s", changeNumber);
+      }
+    });
+  }
+
+  private void automergeChange(
+      ChangeInfo change,
+      RevisionInfo revisionInfo,
+      Account.Id accountId,
+      List<Integer> newDownstreamRevisions)
+      throws RestApiException, IOException, ConfigInvalidException, InvalidQueryParameterException,
+          StorageException {
     String currentRevision =
         gApi.changes().id(change._number).revision(revisionInfo._number).commit(false).commit;
     logger.atFine().log(
         "Handling patchsetevent with change id %s and revision %s", change.id, currentRevision);
 
-    Set<String> downstreamBranches = config.getDownstreamBranches(change.branch, change.project);
+    Set<String> downstreamBranches;
+    try (Timer0.Context ctx = metrics.configResolutionLatency.start();
+        TaskTrace.Step step = TaskTrace.step("scope_resolution")) {
+      downstreamBranches = config.getDownstreamBranches(change.branch, change.project);
+    }
+    TaskTrace.addBranches(downstreamBranches);
 
     if (downstreamBranches.isEmpty()) {
       logger.atFine().log(
@@ -597,44 +1017,167 @@ public class DownstreamCreator
     logger.atFine().log("Automerging change %s from branch %s", change.id, change.branch);
 
     ChangeApi currentChange = gApi.changes().id(change._number);
-    String previousRevision = getPreviousRevision(currentChange, revisionInfo._number);
+    UpstreamRevision previousRevision =
+        getPreviousRevision(currentChange, change._number, revisionInfo._number);
 
     MultipleDownstreamChangeInput mdsMergeInput = new MultipleDownstreamChangeInput();
     mdsMergeInput.dsBranchMap = dsBranchMap;
+    mdsMergeInput.allDownstreamBranches = true;
     mdsMergeInput.changeNumber = change._number;
     mdsMergeInput.patchsetNumber = revisionInfo._number;
     mdsMergeInput.project = change.project;
+    mdsMergeInput.branch = change.branch;
     mdsMergeInput.topic = getOrSetTopic(change._number, change.topic, accountId);
     mdsMergeInput.subject = change.subject;
-    mdsMergeInput.obsoleteRevision = previousRevision;
+    if (previousRevision != null) {
+      mdsMergeInput.obsoleteRevision = previousRevision.revision;
+      mdsMergeInput.obsoletePatchsetNumber = previousRevision.patchsetNumber;
+    }
     mdsMergeInput.currentRevision = currentRevision;
+    commitTopicCache.put(
+        new UpstreamRevision(currentRevision, change._number, revisionInfo._number),
+        mdsMergeInput.topic);
 
-    createChangesAndHandleConflicts(mdsMergeInput, accountId);
+    createChangesAndHandleConflicts(mdsMergeInput, accountId, newDownstreamRevisions);
   }
 
-  private void abandonDownstream(ChangeInfo change, String revision, Account.Id accountId)
+  private void abandonDownstream(ChangeInfo change, UpstreamRevision upstream, Account.Id accountId)
       throws ConfigInvalidException, StorageException {
     try {
       Set<String> downstreamBranches = config.getDownstreamBranches(change.branch, change.project);
+      TaskTrace.addBranches(downstreamBranches);
       if (downstreamBranches.isEmpty()) {
         logger.atFine().log(
             "Downstream branches of %s on %s are empty", change.branch, change.project);
         return;
       }
 
+      List<Integer> existingDownstream =
+          getDownstreamsInTopic(upstream, change.topic, downstreamBranches, accountId);
+      logger.atFine().log("Abandoning existing downstreams: %s", existingDownstream);
+      updateInParallel("abandon", change, existingDownstream, accountId, this::abandonChange);
       for (String downstreamBranch : downstreamBranches) {
-        List<Integer> existingDownstream =
-            getExistingChangesOnBranch(revision, change.topic, downstreamBranch, accountId);
-        logger.atFine().log("Abandoning existing downstreams: %s", existingDownstream);
-        for (Integer changeNumber : existingDownstream) {
-          abandonChange(changeNumber);
-        }
+        downstreamIndex.remove(upstream, downstreamBranch);
       }
     } catch (RestApiException | IOException | InvalidQueryParameterException e) {
       logger.atSevere().withCause(e).log("Failed to abandon downstreams of %s", change.id);
     }
   }
 
+  /**
+   * Get the open downstream changes of the upstream revision on the given branches.
+   *
+   * <p>One query of the topic finds the downstreams on all branches at once. Without a topic, each
+   * branch is looked up on its own.
+   *
+   * @param upstream Upstream revision with its change and patch set number.
+   * @param topic Topic the upstream and downstream changes share.
+   * @param downstreamBranches Branches to find downstream changes on.
+   * @param accountId Account ID to authorize Gerrit API calls.
+   * @return The change numbers of the downstream changes.
+   */
+  private List<Integer> getDownstreamsInTopic(
+      UpstreamRevision upstream,
+      String topic,
+      Set<String> downstreamBranches,
+      Account.Id accountId)
+      throws RestApiException, InvalidQueryParameterException, StorageException,
+          ConfigInvalidException {
+    List<Integer> downstreamChangeNumbers = new ArrayList<>();
+    if (isNullOrEmpty(topic)) {
+      for (String downstreamBranch : downstreamBranches) {
+        downstreamChangeNumbers.addAll(
+            getExistingChangesOnBranch(upstream, topic, downstreamBranch, accountId));
+      }
+      return downstreamChangeNumbers;
+    }
+    ChangeMode changeMode = config.changeMode();
+    List<ChangeInfo> changesInTopic;
+    try (TaskContext ctx = openAs(accountId);
+        TaskTrace.Step step = TaskTrace.step("existing_downstream_lookup")) {
+      changesInTopic = getChangesInTopic(topic);
+    }
+    for (ChangeInfo candidate : changesInTopic) {
+      if (downstreamBranches.contains(candidate.branch)
+          && ChangeUtils.isDownstreamChange(upstream, candidate, changeMode)) {
+        downstreamChangeNumbers.add(candidate._number);
+      }
+    }
+    return downstreamChangeNumbers;
+  }
+
+  /**
+   * Update the downstream changes of an upstream change in parallel on the executor.
+   *
+   * <p>The calling thread updates changes too, and only waits for helpers that already started,
+   * so that this cannot deadlock when the executor is busy with tasks like this one.
+   *
+   * @param operation Name of the update, used as step name and in logs.
+   * @param upstreamChange Upstream change whose downstreams are updated.
+   * @param changeNumbers Downstream changes to update.
+   * @param accountId Account ID to authorize Gerrit API calls.
+   * @param update Update of a single change.
+   */
+  private void updateInParallel(
+      String operation,
+      ChangeInfo upstreamChange,
+      List<Integer> changeNumbers,
+      Account.Id accountId,
+      ChangeUpdate update) {
+    if (changeNumbers.isEmpty()) {
+      return;
+    }
+    long startNanos = System.nanoTime();
+    Queue<Integer> pending = new ConcurrentLinkedQueue<>(changeNumbers);
+    Set<Integer> failed = ConcurrentHashMap.newKeySet();
+    BooleanSupplier cancelled = TaskTrace.cancellation();
+    Runnable worker =
+        () -> {
+          try (TaskContext ctx = openAs(accountId)) {
+            Integer changeNumber;
+            while (!cancelled.getAsBoolean() && (changeNumber = pending.poll()) != null) {
+              try {
+                update.apply(changeNumber);
+              } catch (RestApiException | StorageException e) {
+                failed.add(changeNumber);
+                logger.atWarning().withCause(e).log("Failed to %s %s", operation, changeNumber);
+              }
+            }
+          }
+        };
+    List<Future<?>> helpers = new ArrayList<>();
+    for (int i = 1; i < Math.min(changeNumbers.size(), UPDATE_PARALLELISM); i++) {
+      helpers.add(executorService.submit(worker));
+    }
+    try (TaskTrace.Step step = TaskTrace.step(operation)) {
+      worker.run();
+      for (Future<?> helper : helpers) {
+        // A helper that did not start yet has nothing left to do.
+        if (!helper.cancel(false)) {
+          helper.get();
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      logger.atSevere().withCause(e).log(
+          "Failed to %s downstreams of %s", operation, upstreamChange.id);
+    }
+    logger.atInfo().log(
+        "Ran %s on %d of %d downstream changes of %s in %d ms%s",
+        operation,
+        changeNumbers.size() - failed.size() - pending.size(),
+        changeNumbers.size(),
+        upstreamChange._number,
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos),
+        failed.isEmpty() ? "" : ", failed: " + failed);
+  }
+
+  /** An update of a single downstream change. */
+  private interface ChangeUpdate {
+    void apply(int changeNumber) throws RestApiException;
+  }
+
   private void updateVote(ChangeInfo change, String label, short vote) throws RestApiException {
     logger.atFine().log("Giving %s for label %s to %s", vote, label, change.id);
     // Vote on all downstream branches unless merge conflict.
@@ -644,15 +1187,27 @@ public class DownstreamCreator
     reviewInput.labels = labels;
     reviewInput.notify = NotifyHandling.NONE;
     reviewInput.tag = ChangeUtils.AUTOMERGER_TAG;
-    try {
+    try (Timer1.Context<String> ctx = metrics.gerritApiLatency.start("vote");
+        TaskTrace.Step step = TaskTrace.step("review")) {
       gApi.changes().id(change.id).revision(CURRENT).review(reviewInput);
     } catch (AuthException e) {
       logger.atSevere().withCause(e).log("Automerger could not set label, but still continuing.");
     }
   }
 
-  private String getPreviousRevision(ChangeApi change, int currentPatchSetNumber)
-      throws RestApiException {
+  private void countMerge(
+      MultipleDownstreamChangeInput mdsChangeInput, String downstreamBranch, boolean doChange) {
+    metrics.mergeResults.increment(
+        branchPair(mdsChangeInput, downstreamBranch), doChange ? "success" : "skip");
+  }
+
+  private static String branchPair(
+      MultipleDownstreamChangeInput mdsChangeInput, String downstreamBranch) {
+    return mdsChangeInput.branch + ":" + downstreamBranch;
+  }
+
+  private UpstreamRevision getPreviousRevision(
+      ChangeApi change, int changeNumber, int currentPatchSetNumber) throws RestApiException {
     String previousRevision = null;
     int maxPatchSetNum = 0;
     if (currentPatchSetNumber > 1) {
@@ -667,41 +1222,26 @@ public class DownstreamCreator
         }
       }
     }
-    return previousRevision;
-  }
-
-  private ChangeInfo getOriginalChangeCherryPickMode(int changeNumber)
-      throws RestApiException, InvalidQueryParameterException {
-
-    ChangeInfo current = gApi.changes().id(changeNumber).get();
-    String topic = current.topic;
-    List<ChangeInfo> changesInTopic = getChangesInTopic(topic);
-    for (ChangeInfo change : changesInTopic) {
-      if(ChangeUtils.isDownstreamCherryPick(gApi, change.currentRevision, current)){
-        return getOriginalChangeCherryPickMode(change._number);
-      }
-    }
-
-    return current;
-  }
-
-  private ChangeInfo getOriginalChangeMergeMode(int changeNumber, String currentRevision)
-      throws RestApiException, InvalidQueryParameterException {
-    List<String> parents = ChangeUtils.getChangeParents(gApi, changeNumber, currentRevision);
-    if (parents.size() >= 2) {
-      String secondParentRevision = parents.get(1);
-      String topic = gApi.changes().id(changeNumber).topic();
-      List<ChangeInfo> changesInTopic = getChangesInTopic(topic);
-      for (ChangeInfo change : changesInTopic) {
-        if (change.currentRevision.equals(secondParentRevision)) {
-          return getOriginalChange(change._number, secondParentRevision);
-        }
-      }
+    if (previousRevision == null) {
+      return null;
     }
-    return gApi.changes().id(changeNumber).get();
+    return new UpstreamRevision(previousRevision, changeNumber, maxPatchSetNum);
   }
 
-  private ChangeInfo getOriginalChange(int changeNumber, String currentRevision)
+  /**
+   * Get the change that started the cascade the given change is part of.
+   *
+   * <p>The topic is queried once and the whole cascade is resolved in memory, instead of querying
+   * the topic again for every hop.
+   *
+   * @param changeNumber Change to start from.
+   * @param currentRevision Revision of the change to start from.
+   * @param topic Topic shared by all changes of the cascade.
+   * @return The change at the root of the cascade.
+   * @throws RestApiException
+   * @throws InvalidQueryParameterException
+   */
+  private ChangeInfo getOriginalChange(int changeNumber, String currentRevision, String topic)
       throws RestApiException, InvalidQueryParameterException {
     ChangeMode changeMode = ChangeMode.MERGE;
     try {
@@ -710,11 +1250,15 @@ public class DownstreamCreator
       logger.atSevere().withCause(e).log("Automerger could not read config, but still continuing.");
     }
 
-    if(changeMode == ChangeMode.CHERRY_PICK){
-      return getOriginalChangeCherryPickMode(changeNumber);
-    } else {
-      return getOriginalChangeMergeMode(changeNumber, currentRevision);
+    ChangeOriginGraph originGraph = new ChangeOriginGraph(getChangesInTopic(topic));
+    if (!originGraph.contains(changeNumber)) {
+      // The topic query only returns open changes.
+      originGraph.add(
+          gApi.changes()
+              .id(changeNumber)
+              .get(EnumSet.of(ListChangesOption.ALL_REVISIONS, ListChangesOption.CURRENT_COMMIT)));
     }
+    return originGraph.getOriginalChange(changeNumber, currentRevision, changeMode);
   }
 
   private void abandonChange(Integer changeNumber) throws RestApiException {
@@ -722,15 +1266,20 @@ public class DownstreamCreator
     AbandonInput abandonInput = new AbandonInput();
     abandonInput.notify = NotifyHandling.NONE;
     abandonInput.message = "Upstream change updated; abandoning due to upstream conflict.";
-    gApi.changes().id(changeNumber).abandon(abandonInput);
+    try (Timer1.Context<String> ctx = metrics.gerritApiLatency.start("abandon")) {
+      gApi.changes().id(changeNumber).abandon(abandonInput);
+    }
   }
 
   private List<ChangeInfo> getChangesInTopic(String topic)
       throws InvalidQueryParameterException, RestApiException {
     QueryBuilder queryBuilder = ChangeUtils.constructTopicQuery(topic);
-    return gApi.changes()
-        .query(queryBuilder.get())
-        .withOptions(ListChangesOption.ALL_REVISIONS, ListChangesOption.CURRENT_COMMIT)
-        .get();
+    List<ChangeInfo> changesInTopic =
+        gApi.changes()
+            .query(queryBuilder.get())
+            .withOptions(ListChangesOption.ALL_REVISIONS, ListChangesOption.CURRENT_COMMIT)
+            .get();
+    commitTopicCache.putAll(changesInTopic);
+    return changesInTopic;
   }
 }
@@ -0,0 +1,213 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.automerger;
+
+import com.google.common.cache.Cache;
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.extensions.api.GerritApi;
+import com.google.gerrit.extensions.client.ChangeStatus;
+import com.google.gerrit.extensions.client.ListChangesOption;
+import com.google.gerrit.extensions.common.ChangeInfo;
+import com.google.gerrit.extensions.restapi.RestApiException;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.gerrit.server.cache.serialize.IntegerCacheSerializer;
+import com.google.gerrit.server.cache.serialize.StringCacheSerializer;
+import com.google.inject.Inject;
+import com.google.inject.Module;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import java.io.IOException;
+import java.util.EnumSet;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * DownstreamIndex remembers which downstream change automerger created for an upstream patch set on
+ * a given branch, so that existence checks do not need a topic query.
+ *
+ * <p>The index is kept up to date whenever automerger creates, updates or abandons a downstream
+ * change. Entries are only hints: every hit is verified against the server before it is returned,
+ * and entries that no longer hold are dropped so that callers fall back to querying the topic.
+ */
+@Singleton
+public class DownstreamIndex {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+  static final String CACHE_NAME = "downstream_index";
+
+  private final GerritApi gApi;
+  private final Cache<String, Integer> cache;
+
+  public static Module module() {
+    return new CacheModule() {
+      @Override
+      protected void configure() {
+        persist(CACHE_NAME, String.class, Integer.class)
+            .version(1)
+            .maximumWeight(10000)
+            .diskLimit(1 << 24)
+            .keySerializer(StringCacheSerializer.INSTANCE)
+            .valueSerializer(IntegerCacheSerializer.INSTANCE);
+      }
+    };
+  }
+
+  @Inject
+  public DownstreamIndex(GerritApi gApi, @Named(CACHE_NAME) Cache<String, Integer> cache) {
+    this.gApi = gApi;
+    this.cache = cache;
+  }
+
+  /**
+   * Get the downstream change of the upstream patch set on the given branch.
+   *
+   * @param upstream Upstream revision with its change and patch set number.
+   * @param downstreamBranch Branch the downstream change targets.
+   * @param changeMode Whether downstream changes are merges or cherry-picks.
+   * @return The change number of the open downstream change, or null if it is not known.
+   */
+  public Integer getDownstream(
+      UpstreamRevision upstream, String downstreamBranch, ChangeMode changeMode) {
+    ChangeInfo downstreamChange = getDownstreamChange(upstream, downstreamBranch, changeMode);
+    return downstreamChange != null ? downstreamChange._number : null;
+  }
+
+  /**
+   * Get the downstream change of the upstream patch set on the given branch, verifying merge
+   * parents through the given RevWalk instead of fetching the downstream commit over REST.
+   *
+   * @param revWalk RevWalk over the repository of the upstream change.
+   * @param upstream Upstream revision with its change and patch set number.
+   * @param downstreamBranch Branch the downstream change targets.
+   * @param changeMode Whether downstream changes are merges or cherry-picks.
+   * @return The change number of the open downstream change, or null if it is not known.
+   */
+  public Integer getDownstream(
+      RevWalk revWalk, UpstreamRevision upstream, String downstreamBranch, ChangeMode changeMode) {
+    ChangeInfo downstreamChange =
+        getDownstreamChange(revWalk, upstream, downstreamBranch, changeMode);
+    return downstreamChange != null ? downstreamChange._number : null;
+  }
+
+  /**
+   * Get the downstream change of the upstream patch set on the given branch.
+   *
+   * @param upstream Upstream revision with its change and patch set number.
+   * @param downstreamBranch Branch the downstream change targets.
+   * @param changeMode Whether downstream changes are merges or cherry-picks.
+   * @return The open downstream change with its current revision and commit, or null if it is not
+   *     known.
+   */
+  public ChangeInfo getDownstreamChange(
+      UpstreamRevision upstream, String downstreamBranch, ChangeMode changeMode) {
+    return getDownstreamChange(null, upstream, downstreamBranch, changeMode);
+  }
+
+  private ChangeInfo getDownstreamChange(
+      RevWalk revWalk, UpstreamRevision upstream, String downstreamBranch, ChangeMode changeMode) {
+    if (upstream == null) {
+      return null;
+    }
+    String key = key(upstream, downstreamBranch);
+    Integer downstreamChangeNumber = cache.getIfPresent(key);
+    if (downstreamChangeNumber == null) {
+      return null;
+    }
+    ChangeInfo downstreamChange =
+        getIfValid(revWalk, upstream, downstreamBranch, downstreamChangeNumber, changeMode);
+    if (downstreamChange == null) {
+      logger.atFine().log(
+          "Dropping stale downstream %s of %s on %s",
+          downstreamChangeNumber, upstream, downstreamBranch);
+      cache.invalidate(key);
+    }
+    return downstreamChange;
+  }
+
+  /**
+   * Check that a change is still the open downstream change of the upstream patch set on the given
+   * branch, reading merge parents through the given RevWalk.
+   *
+   * @param revWalk RevWalk over the repository of the upstream change.
+   * @param upstream Upstream revision with its change and patch set number.
+   * @param downstreamBranch Branch the downstream change targets.
+   * @param downstreamChangeNumber Change number of the downstream change to check.
+   * @param changeMode Whether downstream changes are merges or cherry-picks.
+   * @return True if the change is open on the branch and was created from the upstream revision.
+   */
+  public boolean isDownstream(
+      RevWalk revWalk,
+      UpstreamRevision upstream,
+      String downstreamBranch,
+      int downstreamChangeNumber,
+      ChangeMode changeMode) {
+    return getIfValid(revWalk, upstream, downstreamBranch, downstreamChangeNumber, changeMode)
+        != null;
+  }
+
+  /**
+   * Record the downstream change of the upstream patch set on the given branch.
+   *
+   * @param upstream Upstream revision with its change and patch set number.
+   * @param downstreamBranch Branch the downstream change targets.
+   * @param downstreamChangeNumber Change number of the downstream change.
+   */
+  public void put(UpstreamRevision upstream, String downstreamBranch, int downstreamChangeNumber) {
+    if (upstream != null) {
+      cache.put(key(upstream, downstreamBranch), downstreamChangeNumber);
+    }
+  }
+
+  /**
+   * Forget the downstream change of the upstream patch set on the given branch.
+   *
+   * @param upstream Upstream revision with its change and patch set number.
+   * @param downstreamBranch Branch the downstream change targets.
+   */
+  public void remove(UpstreamRevision upstream, String downstreamBranch) {
+    if (upstream != null) {
+      cache.invalidate(key(upstream, downstreamBranch));
+    }
+  }
+
+  private ChangeInfo getIfValid(
+      RevWalk revWalk,
+      UpstreamRevision upstream,
+      String downstreamBranch,
+      int downstreamChangeNumber,
+      ChangeMode changeMode) {
+    try {
+      // Merge parents are read from the RevWalk when there is one, so the commit is not needed.
+      EnumSet<ListChangesOption> options =
+          revWalk == null
+              ? EnumSet.of(ListChangesOption.CURRENT_REVISION, ListChangesOption.CURRENT_COMMIT)
+              : EnumSet.of(ListChangesOption.CURRENT_REVISION);
+      ChangeInfo downstreamChange = gApi.changes().id(downstreamChangeNumber).get(options);
+      if (downstreamChange.status == ChangeStatus.NEW
+          && downstreamBranch.equals(downstreamChange.branch)
+          && (revWalk == null
+              ? ChangeUtils.isDownstreamChange(upstream, downstreamChange, changeMode)
+              : ChangeUtils.isDownstreamChange(revWalk, upstream, downstreamChange, changeMode))) {
+        return downstreamChange;
+      }
+    } catch (RestApiException | IOException e) {
+      logger.atFine().withCause(e).log(
+          "Unable to verify downstream change %s", downstreamChangeNumber);
+    }
+    return null;
+  }
+
+  private static String key(UpstreamRevision upstream, String downstreamBranch) {
+    return upstream.changeNumber + "," + upstream.patchsetNumber + "," + downstreamBranch;
+  }
+}
@@ -0,0 +1,340 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.automerger;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.entities.RefNames;
+import com.google.gerrit.extensions.events.ChangeMergedListener;
+import com.google.gerrit.extensions.events.GitReferenceUpdatedListener;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.gerrit.server.config.AllProjectsName;
+import com.google.gerrit.server.index.change.ChangeIndexer;
+import com.google.inject.Inject;
+import com.google.inject.Module;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import org.eclipse.jgit.errors.ConfigInvalidException;
+
+/**
+ * DownstreamVerdicts remembers, for each upstream patch set, which downstream branches have an
+ * open downstream change, so that submit checks do not need to query.
+ *
+ * <p>A verdict is recorded when automerger handled the downstreams of a patch set on all of its
+ * downstream branches, and lists the branches that failed with a conflict as missing. When a
+ * downstream is abandoned its branch becomes missing. The verdict is dropped when the upstream is
+ * abandoned, a change of the verdict is restored, merged, gets a new patch set or has its topic
+ * edited, and all verdicts are dropped when the automerger config or the manifest changes. A
+ * verdict that lists a branch as missing is also dropped when a change on that branch is uploaded
+ * to or moved into its topic, since it may be a downstream fixed by hand. A verdict is only trusted
+ * while its topic still matches the change.
+ *
+ * <p>Verdicts are kept in memory, so they only exist on the node that automerged the change, and
+ * they are only hints: the submit check verifies the downstream changes a verdict lists before
+ * trusting it. The upstream change is reindexed whenever its verdict changes, so that the submit
+ * requirement shown for it is up to date. Verdicts are also indexed by the changes they are about
+ * and by the branches they miss, so that events only touch the verdicts they affect.
+ */
+@Singleton
+public class DownstreamVerdicts implements ChangeMergedListener, GitReferenceUpdatedListener {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+  static final String CACHE_NAME = "downstream_verdicts";
+  private static final Duration EXPIRY = Duration.ofDays(1);
+
+  private final ConfigLoader config;
+  private final AllProjectsName allProjectsName;
+  private final ChangeIndexer indexer;
+  private final Cache<String, Verdict> cache;
+  // Keys of the verdicts each upstream or downstream change is part of.
+  private final Cache<Integer, Set<String>> keysByChange =
+      CacheBuilder.newBuilder().expireAfterWrite(EXPIRY).build();
+  // Keys of the verdicts that miss a branch, per branch and topic.
+  private final Cache<String, Set<String>> keysByMissing =
+      CacheBuilder.newBuilder().expireAfterWrite(EXPIRY).build();
+
+  public static Module module() {
+    return new CacheModule() {
+      @Override
+      protected void configure() {
+        cache(CACHE_NAME, String.class, Verdict.class)
+            .maximumWeight(10000)
+            .expireAfterWrite(EXPIRY);
+      }
+    };
+  }
+
+  @Inject
+  public DownstreamVerdicts(
+      ConfigLoader config,
+      AllProjectsName allProjectsName,
+      ChangeIndexer indexer,
+      @Named(CACHE_NAME) Cache<String, Verdict> cache) {
+    this.config = config;
+    this.allProjectsName = allProjectsName;
+    this.indexer = indexer;
+    this.cache = cache;
+  }
+
+  /**
+   * Get the verdict of an upstream patch set.
+   *
+   * @param changeNumber Change number of the upstream change.
+   * @param patchsetNumber Patch set number of the upstream change.
+   * @return The verdict, or null if the downstreams of the patch set are not known.
+   */
+  public Verdict get(int changeNumber, int patchsetNumber) {
+    return cache.getIfPresent(key(changeNumber, patchsetNumber));
+  }
+
+  /**
+   * Record the downstreams of the upstream patch set on all of its downstream branches.
+   *
+   * @param project Project of the upstream change.
+   * @param upstream Upstream revision with its change and patch set number.
+   * @param topic Topic the upstream and downstream changes share.
+   * @param downstreamChanges Change number of the downstream change per branch.
+   * @param missingDownstreams Branches that have no downstream change.
+   */
+  public void put(
+      String project,
+      UpstreamRevision upstream,
+      String topic,
+      Map<String, Integer> downstreamChanges,
+      Set<String> missingDownstreams) {
+    Verdict verdict =
+        new Verdict(
+            project,
+            upstream.changeNumber,
+            topic,
+            ImmutableMap.copyOf(downstreamChanges),
+            ImmutableSet.copyOf(missingDownstreams));
+    String key = key(upstream.changeNumber, upstream.patchsetNumber);
+    cache.put(key, verdict);
+    index(key, verdict);
+    reindex(verdict);
+  }
+
+  /**
+   * Update the verdicts after a change was abandoned.
+   *
+   * <p>Verdicts of the change itself are dropped, and verdicts it is a downstream of list its
+   * branch as missing from now on.
+   *
+   * @param changeNumber Change that was abandoned.
+   */
+  public void onAbandoned(int changeNumber) {
+    Set<String> keys = keysByChange.asMap().remove(changeNumber);
+    if (keys == null) {
+      return;
+    }
+    for (String key : keys) {
+      if (isUpstreamKey(key, changeNumber)) {
+        cache.invalidate(key);
+        continue;
+      }
+      Verdict verdict = cache.getIfPresent(key);
+      if (verdict == null) {
+        continue;
+      }
+      Verdict updated = verdict.withoutDownstream(changeNumber);
+      if (updated != verdict && cache.asMap().replace(key, verdict, updated)) {
+        index(key, updated);
+        reindex(updated);
+      }
+    }
+  }
+
+  /**
+   * Forget all verdicts the change is part of, either as upstream or as downstream change.
+   *
+   * @param changeNumber Change whose state changed.
+   */
+  public void invalidateChange(int changeNumber) {
+    Set<String> keys = keysByChange.asMap().remove(changeNumber);
+    if (keys == null) {
+      return;
+    }
+    for (String key : keys) {
+      remove(
+          key,
+          verdict ->
+              isUpstreamKey(key, changeNumber)
+                  || verdict.downstreamChanges.containsValue(changeNumber));
+    }
+  }
+
+  /**
+   * Forget the verdicts that list the branch of a change as missing while the change is in their
+   * topic, since the change may be a downstream uploaded by hand.
+   *
+   * @param topic Topic of the change that was uploaded or had its topic edited.
+   * @param branch Branch of the change.
+   */
+  public void invalidateMissing(String topic, String branch) {
+    if (topic == null || topic.isEmpty()) {
+      return;
+    }
+    Set<String> keys = keysByMissing.asMap().remove(missingKey(topic, branch));
+    if (keys == null) {
+      return;
+    }
+    for (String key : keys) {
+      remove(
+          key,
+          verdict -> topic.equals(verdict.topic) && verdict.missingDownstreams.contains(branch));
+    }
+  }
+
+  /** Forget all verdicts. */
+  private void invalidateAll() {
+    List<Verdict> removed = new ArrayList<>(cache.asMap().values());
+    cache.invalidateAll();
+    keysByChange.invalidateAll();
+    keysByMissing.invalidateAll();
+    removed.forEach(this::reindex);
+  }
+
+  /**
+   * Remove the verdict of the key if it still matches, since the indexes may point to a verdict
+   * that was replaced since.
+   */
+  private void remove(String key, Predicate<Verdict> matches) {
+    Verdict verdict = cache.getIfPresent(key);
+    if (verdict != null && matches.test(verdict) && cache.asMap().remove(key, verdict)) {
+      reindex(verdict);
+    }
+  }
+
+  private void index(String key, Verdict verdict) {
+    addKey(keysByChange, verdict.upstreamChangeNumber, key);
+    for (int downstreamChangeNumber : verdict.downstreamChanges.values()) {
+      addKey(keysByChange, downstreamChangeNumber, key);
+    }
+    if (verdict.topic != null && !verdict.topic.isEmpty()) {
+      for (String missingBranch : verdict.missingDownstreams) {
+        addKey(keysByMissing, missingKey(verdict.topic, missingBranch), key);
+      }
+    }
+  }
+
+  private static <K> void addKey(Cache<K, Set<String>> keys, K indexKey, String key) {
+    keys.asMap()
+        .compute(
+            indexKey,
+            (k, existing) -> {
+              Set<String> updated = existing != null ? existing : ConcurrentHashMap.newKeySet();
+              updated.add(key);
+              return updated;
+            });
+  }
+
+  private void reindex(Verdict verdict) {
+    @SuppressWarnings("unused")
+    Object ignored =
+        indexer.indexAsync(
+            Project.nameKey(verdict.project), Change.id(verdict.upstreamChangeNumber));
+  }
+
+  @Override
+  public void onChangeMerged(ChangeMergedListener.Event event) {
+    // A merged downstream no longer counts as an open downstream change.
+    invalidateChange(event.getChange()._number);
+  }
+
+  @Override
+  public void onGitReferenceUpdated(GitReferenceUpdatedListener.Event event) {
+    String projectName = event.getProjectName();
+    boolean configUpdated =
+        projectName.equals(allProjectsName.get()) && RefNames.REFS_CONFIG.equals(event.getRefName());
+    try {
+      if (configUpdated || projectName.equals(config.getManifestProject())) {
+        logger.atFine().log("Dropping downstream verdicts after update of %s", projectName);
+        invalidateAll();
+      }
+    } catch (ConfigInvalidException e) {
+      invalidateAll();
+    }
+  }
+
+  private static String key(int changeNumber, int patchsetNumber) {
+    return changeNumber + "," + patchsetNumber;
+  }
+
+  private static boolean isUpstreamKey(String key, int changeNumber) {
+    return key.startsWith(changeNumber + ",");
+  }
+
+  private static String missingKey(String topic, String branch) {
+    // Branch names cannot contain a colon, so the key is unambiguous.
+    return branch + ":" + topic;
+  }
+
+  /** Downstream changes of an upstream patch set, and the branches it is missing. */
+  public static class Verdict {
+    public final String project;
+    public final int upstreamChangeNumber;
+    public final String topic;
+    public final ImmutableMap<String, Integer> downstreamChanges;
+    public final ImmutableSet<String> missingDownstreams;
+
+    Verdict(
+        String project,
+        int upstreamChangeNumber,
+        String topic,
+        ImmutableMap<String, Integer> downstreamChanges,
+        ImmutableSet<String> missingDownstreams) {
+      this.project = project;
+      this.upstreamChangeNumber = upstreamChangeNumber;
+      this.topic = topic;
+      this.downstreamChanges = downstreamChanges;
+      this.missingDownstreams = missingDownstreams;
+    }
+
+    /** Returns whether every downstream branch has an open downstream change. */
+    public boolean isComplete() {
+      return missingDownstreams.isEmpty();
+    }
+
+    Verdict withoutDownstream(int changeNumber) {
+      if (!downstreamChanges.containsValue(changeNumber)) {
+        return this;
+      }
+      ImmutableMap.Builder<String, Integer> remaining = ImmutableMap.builder();
+      ImmutableSet.Builder<String> missing = ImmutableSet.builder();
+      missing.addAll(missingDownstreams);
+      for (Map.Entry<String, Integer> downstream : downstreamChanges.entrySet()) {
+        if (downstream.getValue() == changeNumber) {
+          missing.add(downstream.getKey());
+        } else {
+          remaining.put(downstream);
+        }
+      }
+      return new Verdict(
+          project, upstreamChangeNumber, topic, remaining.build(), missing.build());
+    }
+  }
+}
@@ -0,0 +1,89 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.automerger;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.LegacySubmitRequirement;
+import com.google.gerrit.entities.PatchSet;
+import com.google.gerrit.entities.SubmitRecord;
+import com.google.gerrit.server.query.change.ChangeData;
+import com.google.gerrit.server.rules.SubmitRule;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.Optional;
+import org.eclipse.jgit.errors.ConfigInvalidException;
+
+/**
+ * DownstreamsSubmitRule makes a change not ready for submit while it is known to be missing
+ * downstream changes.
+ *
+ * <p>The rule only reads the verdicts automerger records as it creates and abandons downstream
+ * changes, so evaluating it does not query anything. Changes without a verdict, including all
+ * changes on nodes other than the one that automerged them, are left to MergeValidator.
+ */
+@Singleton
+public class DownstreamsSubmitRule implements SubmitRule {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+  static final String RULE_NAME = "automerger~DownstreamsSubmitRule";
+  private static final String REQUIREMENT_TYPE = "automerger_downstreams";
+
+  private final ConfigLoader config;
+  private final DownstreamVerdicts downstreamVerdicts;
+
+  @Inject
+  public DownstreamsSubmitRule(ConfigLoader config, DownstreamVerdicts downstreamVerdicts) {
+    this.config = config;
+    this.downstreamVerdicts = downstreamVerdicts;
+  }
+
+  @Override
+  public Optional<SubmitRecord> evaluate(ChangeData changeData) {
+    try {
+      if (!config.isDownstreamSubmitRequirementEnabled()) {
+        return Optional.empty();
+      }
+    } catch (ConfigInvalidException e) {
+      logger.atSevere().withCause(e).log("Automerger could not read config for submit rule.");
+      return Optional.empty();
+    }
+    Change change = changeData.change();
+    PatchSet.Id currentPatchSet = changeData.currentPatchSet().id();
+    DownstreamVerdicts.Verdict verdict =
+        downstreamVerdicts.get(change.getChangeId(), currentPatchSet.get());
+    if (verdict == null || verdict.topic == null || !verdict.topic.equals(change.getTopic())) {
+      return Optional.empty();
+    }
+
+    SubmitRecord submitRecord = new SubmitRecord();
+    submitRecord.ruleName = RULE_NAME;
+    if (verdict.isComplete()) {
+      submitRecord.status = SubmitRecord.Status.OK;
+      return Optional.of(submitRecord);
+    }
+    submitRecord.status = SubmitRecord.Status.NOT_READY;
+    submitRecord.requirements =
+        ImmutableList.of(
+            LegacySubmitRequirement.builder()
+                .setType(REQUIREMENT_TYPE)
+                .setFallbackText(
+                    "Missing downstream branches "
+                        + Joiner.on(", ").join(verdict.missingDownstreams))
+                .build());
+    return Optional.of(submitRecord);
+  }
+}
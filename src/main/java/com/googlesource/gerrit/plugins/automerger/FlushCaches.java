@@ -0,0 +1,58 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.automerger;
+
+import com.google.gerrit.common.data.GlobalCapability;
+import com.google.gerrit.extensions.annotations.RequiresCapability;
+import com.google.gerrit.extensions.restapi.BadRequestException;
+import com.google.gerrit.extensions.restapi.Response;
+import com.google.gerrit.extensions.restapi.RestApiException;
+import com.google.gerrit.extensions.restapi.RestModifyView;
+import com.google.gerrit.server.config.ConfigResource;
+import com.google.inject.Inject;
+import java.util.List;
+
+/** Flushes caches of the plugin. */
+@RequiresCapability(GlobalCapability.ADMINISTRATE_SERVER)
+class FlushCaches implements RestModifyView<ConfigResource, FlushCaches.Input> {
+
+  private final AutomergerCaches caches;
+
+  @Inject
+  public FlushCaches(AutomergerCaches caches) {
+    this.caches = caches;
+  }
+
+  /**
+   * Flush the given caches.
+   *
+   * @param input Names of the caches to flush, all caches if empty.
+   * @return The names of the flushed caches.
+   * @throws RestApiException if a cache does not exist.
+   */
+  @Override
+  public Response<List<String>> apply(ConfigResource configResource, Input input)
+      throws RestApiException {
+    try {
+      return Response.ok(caches.flush(input != null ? input.caches : null));
+    } catch (IllegalArgumentException e) {
+      throw new BadRequestException(e.getMessage());
+    }
+  }
+
+  static class Input {
+    List<String> caches;
+  }
+}
@@ -0,0 +1,45 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.automerger;
+
+import com.google.gerrit.common.data.GlobalCapability;
+import com.google.gerrit.extensions.annotations.RequiresCapability;
+import com.google.gerrit.extensions.restapi.Response;
+import com.google.gerrit.extensions.restapi.RestReadView;
+import com.google.gerrit.server.config.ConfigResource;
+import com.google.inject.Inject;
+import java.util.List;
+
+/** Lists the caches of the plugin with their statistics. */
+@RequiresCapability(GlobalCapability.ADMINISTRATE_SERVER)
+class ListCaches implements RestReadView<ConfigResource> {
+
+  private final AutomergerCaches caches;
+
+  @Inject
+  public ListCaches(AutomergerCaches caches) {
+    this.caches = caches;
+  }
+
+  /**
+   * Return the statistics of all caches.
+   *
+   * @return A list of cache statistics.
+   */
+  @Override
+  public Response<List<AutomergerCaches.CacheInfo>> apply(ConfigResource configResource) {
+    return Response.ok(caches.getStats(null));
+  }
+}
@@ -0,0 +1,81 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.automerger;
+
+import static java.util.stream.Collectors.toList;
+
+import com.google.gerrit.common.data.GlobalCapability;
+import com.google.gerrit.extensions.annotations.RequiresCapability;
+import com.google.gerrit.extensions.restapi.Response;
+import com.google.gerrit.extensions.restapi.RestReadView;
+import com.google.gerrit.server.config.ConfigResource;
+import com.google.inject.Inject;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+/** Lists the automerger tasks that are queued or running. */
+@RequiresCapability(GlobalCapability.ADMINISTRATE_SERVER)
+class ListTasks implements RestReadView<ConfigResource> {
+
+  private final TaskRegistry taskRegistry;
+
+  @Inject
+  public ListTasks(TaskRegistry taskRegistry) {
+    this.taskRegistry = taskRegistry;
+  }
+
+  /**
+   * Return the queued and running tasks, oldest first.
+   *
+   * @return A list of tasks.
+   */
+  @Override
+  public Response<List<TaskInfo>> apply(ConfigResource configResource) {
+    return Response.ok(getTasks());
+  }
+
+  List<TaskInfo> getTasks() {
+    Instant now = Instant.now();
+    return taskRegistry.list().stream().map(task -> new TaskInfo(task, now)).collect(toList());
+  }
+
+  static class TaskInfo {
+    String id;
+    int changeNumber;
+    String eventType;
+    String state;
+    long ageSeconds;
+    String step;
+    Set<String> branches;
+
+    TaskInfo(TaskRegistry.Task task, Instant now) {
+      id = task.id;
+      changeNumber = task.changeNumber;
+      eventType = task.eventType;
+      if (task.isCancelled()) {
+        state = "CANCELLED";
+      } else if (task.getStartedAt() != null) {
+        state = "RUNNING";
+      } else {
+        state = "QUEUED";
+      }
+      ageSeconds = Duration.between(task.queuedAt, now).getSeconds();
+      step = task.getStep();
+      branches = task.getBranches();
+    }
+  }
+}
@@ -12,7 +12,9 @@ import com.google.gerrit.extensions.common.ChangeInput;
 import com.google.gerrit.extensions.common.CommitInfo;
 import com.google.gerrit.extensions.common.MergeInput;
 import com.google.gerrit.extensions.common.MergePatchSetInput;
+import com.google.gerrit.extensions.restapi.MergeConflictException;
 import com.google.gerrit.extensions.restapi.RestApiException;
+import com.google.gerrit.server.submit.IntegrationConflictException;
 import com.google.inject.Inject;
 import java.util.List;
 import org.eclipse.jgit.errors.ConfigInvalidException;
@@ -24,23 +26,39 @@ public class MergeChangeCreator implements ChangeCreatorApi {
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
   private static final String SUBJECT_PREFIX = "automerger";
   private final GerritApi gApi;
+  private final DownstreamIndex downstreamIndex;
+  private final CommitTopicCache commitTopicCache;
+  private final ConfigLoader config;
+  private final TrialMerger trialMerger;
+  private final ConflictMemo conflictMemo;
   @Inject
   public MergeChangeCreator(
-      GerritApi gApi) {
+      GerritApi gApi,
+      DownstreamIndex downstreamIndex,
+      CommitTopicCache commitTopicCache,
+      ConfigLoader config,
+      TrialMerger trialMerger,
+      ConflictMemo conflictMemo) {
     this.gApi = gApi;
+    this.downstreamIndex = downstreamIndex;
+    this.commitTopicCache = commitTopicCache;
+    this.config = config;
+    this.trialMerger = trialMerger;
+    this.conflictMemo = conflictMemo;
   }
   /**
    * Create a single downstream merge.
    *
    * @param sdsChangeInput Input containing metadata for the merge.
    * @param currentTopic Current topic to create change in.
+   * @return The created downstream change, or null if it already exists.
    * @throws RestApiException
    * @throws ConfigInvalidException
    * @throws InvalidQueryParameterException
    * @throws StorageException
    */
   @Override
-  public ChangeApi create(SingleDownstreamChangeInput sdsChangeInput,
+  public ChangeInfo create(SingleDownstreamChangeInput sdsChangeInput,
       String currentTopic)
       throws RestApiException, ConfigInvalidException, InvalidQueryParameterException, StorageException {
 
@@ -65,23 +83,49 @@ public class MergeChangeCreator implements ChangeCreatorApi {
     downstreamChangeInput.merge = mergeInput;
     downstreamChangeInput.notify = NotifyHandling.NONE;
 
-    downstreamChangeInput.baseChange =
-        ChangeUtils.getBaseChangeIdForMerge(gApi,
+    ChangeInfo baseChange =
+        ChangeUtils.getBaseChangeForMerge(gApi, commitTopicCache, downstreamIndex,
             ChangeUtils.getChangeParents(gApi, sdsChangeInput.changeNumber, sdsChangeInput.currentRevision),
             sdsChangeInput.downstreamBranch);
+    if (baseChange != null) {
+      downstreamChangeInput.baseChange = String.valueOf(baseChange._number);
+    }
 
     if (!sdsChangeInput.doChange) {
+      // A skip keeps the tree of the base. The "ours" strategy copies it without looking at the
+      // upstream tree, so skips need neither the conflict memo nor a trial merge. The commit is
+      // still built by Gerrit so that change creation stays subject to its permission checks and
+      // commit validators.
       mergeInput.strategy = "ours";
       logger.atFine().log(
           "Skipping merge for %s to %s",
           sdsChangeInput.currentRevision, sdsChangeInput.downstreamBranch);
+      return gApi.changes().createAsInfo(downstreamChangeInput);
     }
 
-    return gApi.changes().create(downstreamChangeInput);
+    String base =
+        conflictMemo.getBase(
+            sdsChangeInput.project,
+            sdsChangeInput.downstreamBranch,
+            baseChange != null ? baseChange.currentRevision : null);
+    conflictMemo.check(sdsChangeInput.currentRevision, base);
+    try {
+      if (config.isTrialMergeEnabled()) {
+        trialMerger.checkMergeable(
+            sdsChangeInput.project,
+            sdsChangeInput.downstreamBranch,
+            base,
+            sdsChangeInput.currentRevision);
+      }
+      return gApi.changes().createAsInfo(downstreamChangeInput);
+    } catch (MergeConflictException | IntegrationConflictException e) {
+      conflictMemo.put(sdsChangeInput.currentRevision, base, e.getMessage());
+      throw e;
+    }
   }
 
   @Override
-  public void update(UpdateDownstreamChangeInput updateDownstreamChangeInput)
+  public ChangeInfo update(UpdateDownstreamChangeInput updateDownstreamChangeInput)
       throws RestApiException, ConfigInvalidException, InvalidQueryParameterException {
 
     MergeInput mergeInput = new MergeInput();
@@ -100,10 +144,36 @@ public class MergeChangeCreator implements ChangeCreatorApi {
     }
     mergePatchSetInput.merge = mergeInput;
 
-    mergePatchSetInput.baseChange =
-        ChangeUtils.getBaseChangeIdForMerge(gApi,
+    ChangeInfo baseChange =
+        ChangeUtils.getBaseChangeForMerge(gApi, commitTopicCache, downstreamIndex,
             ChangeUtils.getChangeParents(gApi, updateDownstreamChangeInput.upstreamChangeNumber,
                 updateDownstreamChangeInput.upstreamRevision), updateDownstreamChangeInput.downstreamBranch);
+    if (baseChange != null) {
+      mergePatchSetInput.baseChange = String.valueOf(baseChange._number);
+    }
+
+    // Without a base change, the new patch set is based on the tip of the downstream branch.
+    String base = null;
+    if (updateDownstreamChangeInput.doChange) {
+      base =
+          conflictMemo.getBase(
+              updateDownstreamChangeInput.project,
+              updateDownstreamChangeInput.downstreamBranch,
+              baseChange != null ? baseChange.currentRevision : null);
+      conflictMemo.check(updateDownstreamChangeInput.upstreamRevision, base);
+      if (config.isTrialMergeEnabled()) {
+        try {
+          trialMerger.checkMergeable(
+              updateDownstreamChangeInput.project,
+              updateDownstreamChangeInput.downstreamBranch,
+              base,
+              updateDownstreamChangeInput.upstreamRevision);
+        } catch (MergeConflictException e) {
+          conflictMemo.put(updateDownstreamChangeInput.upstreamRevision, base, e.getMessage());
+          throw e;
+        }
+      }
+    }
 
     ChangeApi originalChange = gApi.changes().id(updateDownstreamChangeInput.downstreamChangeNumber);
 
@@ -113,12 +183,26 @@ public class MergeChangeCreator implements ChangeCreatorApi {
       originalChange.restore(restoreInput);
     }
 
-    originalChange.createMergePatchSet(mergePatchSetInput);
+    try {
+      return originalChange.createMergePatchSet(mergePatchSetInput);
+    } catch (MergeConflictException | IntegrationConflictException e) {
+      conflictMemo.put(updateDownstreamChangeInput.upstreamRevision, base, e.getMessage());
+      throw e;
+    }
   }
 
   boolean isAlreadyMerged(SingleDownstreamChangeInput sdsChangeInput, String currentTopic)
       throws InvalidQueryParameterException, RestApiException {
     // If we've already merged this commit to this branch, don't do it again.
+    UpstreamRevision upstream =
+        new UpstreamRevision(
+            sdsChangeInput.currentRevision,
+            sdsChangeInput.changeNumber,
+            sdsChangeInput.patchsetNumber);
+    if (downstreamIndex.getDownstream(upstream, sdsChangeInput.downstreamBranch, ChangeMode.MERGE)
+        != null) {
+      return true;
+    }
     List<ChangeInfo> changes =
         ChangeUtils.getChangesInTopicAndBranch(gApi, currentTopic, sdsChangeInput.downstreamBranch);
     for (ChangeInfo change : changes) {
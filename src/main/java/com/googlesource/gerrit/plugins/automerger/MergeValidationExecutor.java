@@ -0,0 +1,83 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.automerger;
+
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.server.git.WorkQueue;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * MergeValidationExecutor runs the merge validations that are bounded by a timeout.
+ *
+ * <p>It is separate from the executor automerger tasks run on, so that the timeout measures the
+ * check itself rather than the time spent waiting behind automerger tasks.
+ */
+@Singleton
+public class MergeValidationExecutor implements LifecycleListener {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+  private static final int THREADS = 4;
+
+  private final WorkQueue workQueue;
+  private volatile ScheduledExecutorService executor;
+
+  @Inject
+  public MergeValidationExecutor(WorkQueue workQueue) {
+    this.workQueue = workQueue;
+  }
+
+  @Override
+  public void start() {
+    executor = workQueue.createQueue(THREADS, "Automerger-MergeValidation");
+  }
+
+  @Override
+  public void stop() {
+    if (executor != null) {
+      // Let running checks finish, they may be reading a repository.
+      executor.shutdown();
+      executor = null;
+    }
+  }
+
+  /**
+   * Submit a merge validation.
+   *
+   * <p>If the executor is not running, because the plugin is being stopped, the check runs on the
+   * calling thread instead, so that it is never skipped.
+   *
+   * @param check The check to run.
+   * @return The future of the check.
+   */
+  public <T> Future<T> submit(Callable<T> check) {
+    ScheduledExecutorService current = executor;
+    if (current != null) {
+      try {
+        return current.submit(check);
+      } catch (RejectedExecutionException e) {
+        logger.atFine().log("Merge validation executor is shut down, validating inline");
+      }
+    }
+    FutureTask<T> task = new FutureTask<>(check);
+    task.run();
+    return task;
+  }
+}
@@ -16,45 +16,100 @@ package com.googlesource.gerrit.plugins.automerger;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
+import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.flogger.FluentLogger;
 import com.google.gerrit.common.data.ParameterizedString;
+import com.google.gerrit.entities.Account;
 import com.google.gerrit.entities.BranchNameKey;
 import com.google.gerrit.entities.PatchSet;
+import com.google.gerrit.extensions.events.ChangeMergedListener;
 import com.google.gerrit.extensions.api.GerritApi;
+import com.google.gerrit.extensions.api.changes.NotifyHandling;
+import com.google.gerrit.extensions.api.changes.ReviewInput;
 import com.google.gerrit.extensions.client.ListChangesOption;
 import com.google.gerrit.extensions.common.ChangeInfo;
 import com.google.gerrit.extensions.restapi.RestApiException;
+import com.google.gerrit.metrics.Timer0;
 import com.google.gerrit.server.IdentifiedUser;
 import com.google.gerrit.server.git.CodeReviewCommit;
 import com.google.gerrit.server.git.CodeReviewCommit.CodeReviewRevWalk;
+import com.google.gerrit.server.git.GitRepositoryManager;
 import com.google.gerrit.server.git.validators.MergeValidationException;
 import com.google.gerrit.server.git.validators.MergeValidationListener;
 import com.google.gerrit.server.project.ProjectState;
+import com.google.gerrit.server.util.ManualRequestContext;
+import com.google.gerrit.server.util.OneOffRequestContext;
 import com.google.inject.Inject;
+import com.google.inject.Singleton;
 import java.io.IOException;
+import java.time.Duration;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import org.eclipse.jgit.errors.ConfigInvalidException;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
 
 /**
  * MergeValidator will validate that all downstream changes are uploaded for review before
  * submission.
+ *
+ * <p>Lookups are shared by all commits of a submission, which is identified by its RevWalk, so
+ * that submitting a whole topic queries the topic once instead of once per commit and branch.
+ *
+ * <p>A verdict recorded when the downstreams were created only spares the topic query: each
+ * downstream change it lists is still checked to be open on its branch and created from the
+ * submitted patch set, so a verdict that went stale on this node cannot let a submit through.
+ *
+ * <p>When the check runs out of time and the submit is allowed anyway, the change is told so once
+ * it is merged, since commenting while the submit still updates the change would make it retry.
  */
-public class MergeValidator implements MergeValidationListener {
+@Singleton
+public class MergeValidator implements MergeValidationListener, ChangeMergedListener {
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
 
   protected GerritApi gApi;
   protected ConfigLoader config;
+  protected DownstreamIndex downstreamIndex;
+  protected DownstreamVerdicts downstreamVerdicts;
+  private final AutomergerMetrics metrics;
+  private final OneOffRequestContext oneOffRequestContext;
+  private final GitRepositoryManager repoManager;
+  private final MergeValidationExecutor validationExecutor;
+  private final Cache<CodeReviewRevWalk, SubmissionBatch> submissionBatches =
+      CacheBuilder.newBuilder().weakKeys().build();
+  // Timeout of each change that is being submitted without checking its downstreams.
+  private final Cache<Integer, Long> uncheckedSubmits =
+      CacheBuilder.newBuilder().expireAfterWrite(Duration.ofHours(1)).build();
 
   @Inject
-  public MergeValidator(GerritApi gApi, ConfigLoader config) {
+  public MergeValidator(
+      GerritApi gApi,
+      ConfigLoader config,
+      DownstreamIndex downstreamIndex,
+      DownstreamVerdicts downstreamVerdicts,
+      AutomergerMetrics metrics,
+      OneOffRequestContext oneOffRequestContext,
+      GitRepositoryManager repoManager,
+      MergeValidationExecutor validationExecutor) {
     this.gApi = gApi;
     this.config = config;
+    this.downstreamIndex = downstreamIndex;
+    this.downstreamVerdicts = downstreamVerdicts;
+    this.metrics = metrics;
+    this.oneOffRequestContext = oneOffRequestContext;
+    this.repoManager = repoManager;
+    this.validationExecutor = validationExecutor;
   }
 
   @Override
@@ -68,10 +123,25 @@ public class MergeValidator implements MergeValidationListener {
       IdentifiedUser caller)
       throws MergeValidationException {
     int changeId = commit.change().getChangeId();
-    try {
-      ChangeInfo upstreamChange =
-          gApi.changes().id(changeId).get(EnumSet.of(ListChangesOption.CURRENT_REVISION));
-      Set<String> missingDownstreams = getMissingDownstreamMerges(upstreamChange);
+    String topic = commit.change().getTopic();
+    UpstreamRevision upstream = new UpstreamRevision(commit.name(), changeId, patchSetId.get());
+    SubmissionBatch batch =
+        submissionBatches.asMap().computeIfAbsent(revWalk, k -> new SubmissionBatch());
+    try (Timer0.Context ignored = metrics.mergeValidationLatency.start()) {
+      long timeout = config.getMergeValidationTimeout();
+      Set<String> missingDownstreams;
+      if (timeout > 0) {
+        missingDownstreams =
+            getMissingDownstreamsWithin(
+                timeout, destProject, destBranch, batch, upstream, topic, caller);
+        if (missingDownstreams == null) {
+          onTimeout(changeId, timeout);
+          return;
+        }
+      } else {
+        missingDownstreams =
+            getMissingDownstreams(revWalk, destProject, destBranch, batch, upstream, topic);
+      }
       if (!missingDownstreams.isEmpty()) {
         throw new MergeValidationException(getMissingDownstreamsMessage(missingDownstreams));
       }
@@ -85,6 +155,195 @@ public class MergeValidator implements MergeValidationListener {
     }
   }
 
+  private Set<String> getMissingDownstreams(
+      RevWalk revWalk,
+      ProjectState destProject,
+      BranchNameKey destBranch,
+      SubmissionBatch batch,
+      UpstreamRevision upstream,
+      String topic)
+      throws RestApiException, IOException, ConfigInvalidException, InvalidQueryParameterException {
+    int changeId = upstream.changeNumber;
+    Set<String> missingDownstreams = batch.getMissingDownstreams(changeId);
+    if (missingDownstreams == null
+        && hasCompleteVerdict(revWalk, destProject, destBranch, batch, upstream, topic)) {
+      logger.atFine().log("Downstreams of %s are known to be complete", upstream);
+      missingDownstreams = new HashSet<>();
+      batch.putMissingDownstreams(changeId, missingDownstreams);
+    }
+    if (missingDownstreams == null) {
+      ChangeInfo upstreamChange = getUpstreamChange(batch, changeId, topic);
+      missingDownstreams = getMissingDownstreamMerges(revWalk, upstreamChange, batch);
+      batch.putMissingDownstreams(changeId, missingDownstreams);
+    }
+    return missingDownstreams;
+  }
+
+  /**
+   * Check the downstreams on the validation executor, giving up after the timeout.
+   *
+   * <p>The check opens its own repository, since it may still be running after the submit moved
+   * on. A check that runs out of time is left to finish rather than interrupted, as interrupting
+   * JGit readers can close pack files other threads share.
+   *
+   * @return The missing downstream branches, or null if the check did not finish in time.
+   */
+  private Set<String> getMissingDownstreamsWithin(
+      long timeout,
+      ProjectState destProject,
+      BranchNameKey destBranch,
+      SubmissionBatch batch,
+      UpstreamRevision upstream,
+      String topic,
+      IdentifiedUser caller)
+      throws RestApiException, IOException, ConfigInvalidException, InvalidQueryParameterException {
+    Future<Set<String>> future =
+        validationExecutor.submit(
+            () -> {
+              try (ManualRequestContext ctx = oneOffRequestContext.openAs(caller.getAccountId());
+                  Repository repo = repoManager.openRepository(destProject.getNameKey());
+                  RevWalk rw = new RevWalk(repo)) {
+                return getMissingDownstreams(
+                    rw, destProject, destBranch, batch, upstream, topic);
+              }
+            });
+    try {
+      return future.get(timeout, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      future.cancel(false);
+      return null;
+    } catch (InterruptedException e) {
+      future.cancel(false);
+      Thread.currentThread().interrupt();
+      return null;
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      Throwables.throwIfInstanceOf(cause, RestApiException.class);
+      Throwables.throwIfInstanceOf(cause, IOException.class);
+      Throwables.throwIfInstanceOf(cause, ConfigInvalidException.class);
+      Throwables.throwIfInstanceOf(cause, InvalidQueryParameterException.class);
+      Throwables.throwIfUnchecked(cause);
+      throw new IOException(cause);
+    }
+  }
+
+  private void onTimeout(int changeId, long timeout)
+      throws ConfigInvalidException, MergeValidationException {
+    metrics.mergeValidationTimeouts.increment();
+    if (config.getMergeValidationTimeoutPolicy() == MergeValidationTimeoutPolicy.FAIL) {
+      logger.atWarning().log(
+          "Rejecting submit of %s, downstreams were not validated within %d ms", changeId, timeout);
+      throw new MergeValidationException(
+          "Automerger could not validate the downstream changes in time, please try again.");
+    }
+    logger.atWarning().log(
+        "Allowing submit of %s, downstreams were not validated within %d ms", changeId, timeout);
+    // The warning is left once the change is merged, however often the submit retries.
+    uncheckedSubmits.put(changeId, timeout);
+  }
+
+  @Override
+  public void onChangeMerged(ChangeMergedListener.Event event) {
+    int changeId = event.getChange()._number;
+    Long timeout = uncheckedSubmits.asMap().remove(changeId);
+    if (timeout == null) {
+      return;
+    }
+    try {
+      Account.Id contextUserId = config.getContextUserId();
+      try (ManualRequestContext ctx = oneOffRequestContext.openAs(contextUserId)) {
+        ReviewInput reviewInput = new ReviewInput();
+        reviewInput.message(
+            "Automerger could not validate the downstream changes within "
+                + timeout
+                + " ms, so this change was submitted without checking them.");
+        reviewInput.notify = NotifyHandling.OWNER;
+        reviewInput.tag = ChangeUtils.AUTOMERGER_TAG;
+        gApi.changes().id(changeId).current().review(reviewInput);
+      }
+    } catch (RestApiException | ConfigInvalidException e) {
+      logger.atSevere().withCause(e).log(
+          "Automerger could not leave a timeout warning on %s", changeId);
+    }
+  }
+
+  /**
+   * Check whether the verdict of the upstream patch set lists a downstream change on every
+   * downstream branch that is still open on that branch and created from the patch set.
+   */
+  private boolean hasCompleteVerdict(
+      RevWalk revWalk,
+      ProjectState destProject,
+      BranchNameKey destBranch,
+      SubmissionBatch batch,
+      UpstreamRevision upstream,
+      String topic)
+      throws RestApiException, IOException, ConfigInvalidException {
+    DownstreamVerdicts.Verdict verdict =
+        downstreamVerdicts.get(upstream.changeNumber, upstream.patchsetNumber);
+    // Downstreams are found through the topic, so a verdict for another topic is stale.
+    if (verdict == null
+        || !verdict.isComplete()
+        || Strings.isNullOrEmpty(verdict.topic)
+        || !verdict.topic.equals(topic)) {
+      return false;
+    }
+    // Skipped cherry-picks have no downstream change, the full check looks at their hashtags.
+    Set<String> downstreamBranches =
+        getDownstreamBranches(batch, destProject.getNameKey().get(), destBranch.shortName());
+    if (!verdict.downstreamChanges.keySet().equals(downstreamBranches)) {
+      return false;
+    }
+    ChangeMode changeMode = config.changeMode();
+    for (Map.Entry<String, Integer> downstream : verdict.downstreamChanges.entrySet()) {
+      if (!downstreamIndex.isDownstream(
+          revWalk, upstream, downstream.getKey(), downstream.getValue(), changeMode)) {
+        logger.atFine().log(
+            "Verdict of %s is stale, downstream %s on %s no longer holds",
+            upstream, downstream.getValue(), downstream.getKey());
+        downstreamVerdicts.invalidateChange(upstream.changeNumber);
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private Set<String> getDownstreamBranches(SubmissionBatch batch, String project, String branch)
+      throws RestApiException, IOException, ConfigInvalidException {
+    Set<String> downstreamBranches = batch.getDownstreamBranches(project, branch);
+    if (downstreamBranches == null) {
+      downstreamBranches = config.getDownstreamBranches(branch, project);
+      batch.putDownstreamBranches(project, branch, downstreamBranches);
+    }
+    return downstreamBranches;
+  }
+
+  private ChangeInfo getUpstreamChange(SubmissionBatch batch, int changeId, String topic)
+      throws RestApiException, InvalidQueryParameterException {
+    if (topic != null && !topic.equals("")) {
+      for (ChangeInfo change : getOpenChangesInTopic(batch, topic)) {
+        if (change._number == changeId) {
+          return change;
+        }
+      }
+    }
+    return gApi.changes().id(changeId).get(EnumSet.of(ListChangesOption.CURRENT_REVISION));
+  }
+
+  private List<ChangeInfo> getOpenChangesInTopic(SubmissionBatch batch, String topic)
+      throws RestApiException, InvalidQueryParameterException {
+    List<ChangeInfo> changesInTopic = batch.getOpenChangesInTopic(topic);
+    if (changesInTopic == null) {
+      changesInTopic =
+          gApi.changes()
+              .query(ChangeUtils.constructTopicQuery(topic).get())
+              .withOption(ListChangesOption.CURRENT_REVISION)
+              .get();
+      batch.putOpenChangesInTopic(topic, changesInTopic);
+    }
+    return changesInTopic;
+  }
+
   private String getMissingDownstreamsMessage(Set<String> missingDownstreams)
       throws ConfigInvalidException {
     String missingDownstreamsMessage = config.getMissingDownstreamsMessage();
@@ -98,17 +357,29 @@ public class MergeValidator implements MergeValidationListener {
     return substitutionMap;
   }
 
+  /**
+   * Get the downstream branches that have no open downstream change of the upstream change.
+   *
+   * <p>Merge parents of the candidates are read through the RevWalk of the submission, so the
+   * candidates are only fetched with their current revision.
+   *
+   * @param revWalk RevWalk over the repository of the upstream change.
+   * @param upstreamChange Upstream change fetched with CURRENT_REVISION.
+   * @param batch Lookups shared with the other commits of the submission.
+   * @return Downstream branches that are missing a downstream change.
+   */
   @VisibleForTesting
-  protected Set<String> getMissingDownstreamMerges(ChangeInfo upstreamChange)
+  protected Set<String> getMissingDownstreamMerges(
+      RevWalk revWalk, ChangeInfo upstreamChange, SubmissionBatch batch)
       throws RestApiException, IOException, ConfigInvalidException, InvalidQueryParameterException {
     Set<String> missingDownstreamBranches = new HashSet<>();
 
     ChangeMode changeMode = config.changeMode();
+    UpstreamRevision upstream = UpstreamRevision.fromChange(upstreamChange);
     Set<String> downstreamBranches =
-        config.getDownstreamBranches(upstreamChange.branch, upstreamChange.project);
+        getDownstreamBranches(batch, upstreamChange.project, upstreamChange.branch);
     for (String downstreamBranch : downstreamBranches) {
       boolean dsExists = false;
-      QueryBuilder queryBuilder = new QueryBuilder();
       if (upstreamChange.topic == null || upstreamChange.topic.equals("")) {
         // If topic is null or empty, we immediately know that downstream is missing.
         missingDownstreamBranches.add(downstreamBranch);
@@ -117,16 +388,13 @@ public class MergeValidator implements MergeValidationListener {
       if(cherryPickSkipped(upstreamChange, downstreamBranch)){
         continue;
       }
-      queryBuilder.addParameter("topic", upstreamChange.topic);
-      queryBuilder.addParameter("branch", downstreamBranch);
-      queryBuilder.addParameter("status", "open");
-      List<ChangeInfo> changes =
-          gApi.changes()
-              .query(queryBuilder.get())
-              .withOptions(ListChangesOption.ALL_REVISIONS, ListChangesOption.CURRENT_COMMIT)
-              .get();
-      for (ChangeInfo change : changes) {
-        if(ChangeUtils.isDownstreamChange(gApi, upstreamChange.currentRevision, change, changeMode)) {
+      if (downstreamIndex.getDownstream(revWalk, upstream, downstreamBranch, changeMode) != null) {
+        continue;
+      }
+      for (ChangeInfo change : getOpenChangesInTopic(batch, upstreamChange.topic)) {
+        if (downstreamBranch.equals(change.branch)
+            && ChangeUtils.isDownstreamChange(revWalk, upstream, change, changeMode)) {
+          downstreamIndex.put(upstream, downstreamBranch, change._number);
           dsExists = true;
           break;
         }
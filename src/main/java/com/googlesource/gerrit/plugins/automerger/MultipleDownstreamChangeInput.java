@@ -22,11 +22,15 @@ import java.util.Map;
  */
 public class MultipleDownstreamChangeInput {
   public Map<String, Boolean> dsBranchMap;
+  /** Whether dsBranchMap holds every configured downstream branch of the change. */
+  public boolean allDownstreamBranches;
   public int changeNumber;
   public int patchsetNumber;
   public String project;
+  public String branch;
   public String topic;
   public String subject;
   public String obsoleteRevision;
+  public int obsoletePatchsetNumber;
   public String currentRevision;
 }
@@ -0,0 +1,61 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.automerger;
+
+import com.google.gerrit.extensions.common.ChangeInfo;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lookups shared by the merge validations of the commits of one submission.
+ *
+ * <p>When a whole topic is submitted, MergeValidator runs once per commit. The open changes of the
+ * topic, the downstream branches of each project and branch, and the verdict of each change are
+ * the same for all of them, so they are resolved once and kept here for the submission.
+ */
+class SubmissionBatch {
+  private final Map<String, List<ChangeInfo>> openChangesByTopic = new HashMap<>();
+  private final Map<String, Set<String>> downstreamBranches = new HashMap<>();
+  private final Map<Integer, Set<String>> missingDownstreams = new HashMap<>();
+
+  /** Returns the open changes of the topic, or null if the topic was not fetched yet. */
+  synchronized List<ChangeInfo> getOpenChangesInTopic(String topic) {
+    return openChangesByTopic.get(topic);
+  }
+
+  synchronized void putOpenChangesInTopic(String topic, List<ChangeInfo> changes) {
+    openChangesByTopic.put(topic, changes);
+  }
+
+  /** Returns the downstream branches, or null if they were not resolved yet. */
+  synchronized Set<String> getDownstreamBranches(String project, String branch) {
+    return downstreamBranches.get(project + "," + branch);
+  }
+
+  synchronized void putDownstreamBranches(String project, String branch, Set<String> branches) {
+    downstreamBranches.put(project + "," + branch, branches);
+  }
+
+  /** Returns the missing downstream branches of the change, or null if it was not validated. */
+  synchronized Set<String> getMissingDownstreams(int changeNumber) {
+    return missingDownstreams.get(changeNumber);
+  }
+
+  synchronized void putMissingDownstreams(int changeNumber, Set<String> branches) {
+    missingDownstreams.put(changeNumber, branches);
+  }
+}
@@ -0,0 +1,152 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.automerger;
+
+import static java.util.Comparator.comparing;
+import static java.util.stream.Collectors.toList;
+
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.flogger.FluentLogger;
+import com.google.inject.Singleton;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * TaskRegistry keeps track of the automerger tasks that are queued or running, so that they can be
+ * listed and cancelled by administrators.
+ *
+ * <p>A task is registered when its event is received and forgotten once it is done. Cancelling a
+ * queued task makes it return as soon as it starts; a running task checks for cancellation when it
+ * starts a step, so that it stops between updates rather than in the middle of one.
+ */
+@Singleton
+public class TaskRegistry {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  private final Map<String, Task> tasks = new ConcurrentHashMap<>();
+
+  /**
+   * Register a task that is about to be queued.
+   *
+   * @param eventType Type of the event the task handles.
+   * @param changeNumber Change the event is about.
+   * @return The task, to be passed to started and finished.
+   */
+  public Task register(String eventType, int changeNumber) {
+    Task task = new Task(UUID.randomUUID().toString(), eventType, changeNumber);
+    tasks.put(task.id, task);
+    return task;
+  }
+
+  /**
+   * Mark a task as running.
+   *
+   * @param task Task that starts.
+   * @return Whether the task should run, false if it was cancelled while queued.
+   */
+  public boolean started(Task task) {
+    synchronized (task) {
+      if (task.cancelled) {
+        tasks.remove(task.id);
+        return false;
+      }
+      task.startedAt = Instant.now();
+      return true;
+    }
+  }
+
+  /**
+   * Forget a task that is done, or that could not be queued.
+   *
+   * @param task Task that is done.
+   */
+  public void finished(Task task) {
+    tasks.remove(task.id);
+  }
+
+  /** Returns the queued and running tasks, oldest first. */
+  public List<Task> list() {
+    return tasks.values().stream().sorted(comparing(t -> t.queuedAt)).collect(toList());
+  }
+
+  /**
+   * Cancel a queued or running task.
+   *
+   * @param id Id of the task.
+   * @return Whether the task was found.
+   */
+  public boolean cancel(String id) {
+    Task task = tasks.get(id);
+    if (task == null) {
+      return false;
+    }
+    synchronized (task) {
+      task.cancelled = true;
+    }
+    logger.atWarning().log(
+        "Cancelled automerger task %s: %s of change %s", id, task.eventType, task.changeNumber);
+    return true;
+  }
+
+  /** An automerger task handling one event. */
+  public static class Task {
+    public final String id;
+    public final String eventType;
+    public final int changeNumber;
+    public final Instant queuedAt = Instant.now();
+    private final Set<String> branches = ConcurrentHashMap.newKeySet();
+    private volatile Instant startedAt;
+    private volatile String step;
+    private volatile boolean cancelled;
+
+    Task(String id, String eventType, int changeNumber) {
+      this.id = id;
+      this.eventType = eventType;
+      this.changeNumber = changeNumber;
+    }
+
+    /** Returns when the task started running, or null if it is still queued. */
+    public Instant getStartedAt() {
+      return startedAt;
+    }
+
+    /** Returns the step the task is in, or null if it is in none. */
+    public String getStep() {
+      return step;
+    }
+
+    /** Returns the downstream branches the task resolved so far. */
+    public Set<String> getBranches() {
+      return ImmutableSortedSet.copyOf(branches);
+    }
+
+    public boolean isCancelled() {
+      return cancelled;
+    }
+
+    void setStep(String step) {
+      this.step = step;
+    }
+
+    void addBranches(Collection<String> downstreamBranches) {
+      branches.addAll(downstreamBranches);
+    }
+  }
+}
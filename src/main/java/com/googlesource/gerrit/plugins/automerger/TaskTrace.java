@@ -0,0 +1,169 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.automerger;
+
+import com.google.common.base.Joiner;
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.server.logging.Metadata;
+import com.google.gerrit.server.logging.TraceContext;
+import com.google.gerrit.server.logging.TraceContext.TraceTimer;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Trace of one automerger task, which tags its log records with a task id and times its steps.
+ *
+ * <p>The trace of the running task is kept per thread, so that steps deep in the task can be timed
+ * without passing it around. The step the task is in is also reported to its entry in the
+ * TaskRegistry. When the task takes longer than the threshold, the time spent in each
+ * step is logged as a single record.
+ *
+ * <p>Starting a step is where a cancelled task stops: the step throws a TaskCancelledException
+ * instead of starting.
+ */
+class TaskTrace implements AutoCloseable {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+  private static final ThreadLocal<TaskTrace> current = new ThreadLocal<>();
+
+  private final TaskRegistry.Task task;
+  private final long thresholdMillis;
+  private final TraceContext traceContext;
+  private final TaskTrace parent;
+  private final long startNanos = System.nanoTime();
+  private final Map<String, Long> stepNanos = new LinkedHashMap<>();
+
+  private TaskTrace(TaskRegistry.Task task, long thresholdMillis) {
+    this.task = task;
+    this.thresholdMillis = thresholdMillis;
+    this.traceContext = TraceContext.open().addTag("automerger_task", task.id);
+    this.parent = current.get();
+  }
+
+  /**
+   * Start the trace of a task on the current thread.
+   *
+   * @param task Task as registered in the TaskRegistry.
+   * @param thresholdMillis Duration above which the steps of the task are logged, 0 to never log
+   *     them.
+   * @return The trace, to be closed when the task is done.
+   */
+  static TaskTrace start(TaskRegistry.Task task, long thresholdMillis) {
+    TaskTrace trace = new TaskTrace(task, thresholdMillis);
+    current.set(trace);
+    return trace;
+  }
+
+  /**
+   * Time a step of the task running on the current thread.
+   *
+   * @param name Name of the step.
+   * @return The step, to be closed when it is done.
+   * @throws TaskCancelledException If the task was cancelled.
+   */
+  static Step step(String name) {
+    checkCancelled();
+    return new Step(current.get(), name);
+  }
+
+  /**
+   * Stop the task running on the current thread if it was cancelled.
+   *
+   * @throws TaskCancelledException If the task was cancelled.
+   */
+  static void checkCancelled() {
+    TaskTrace trace = current.get();
+    if (trace != null && trace.task.isCancelled()) {
+      throw new TaskCancelledException(trace.task);
+    }
+  }
+
+  /**
+   * Returns whether the task running on the current thread was cancelled, for helpers of the task
+   * that run on other threads.
+   */
+  static BooleanSupplier cancellation() {
+    TaskTrace trace = current.get();
+    if (trace == null) {
+      return () -> false;
+    }
+    return trace.task::isCancelled;
+  }
+
+  /**
+   * Report the downstream branches the task running on the current thread automerges to.
+   *
+   * @param downstreamBranches Branches resolved by the task.
+   */
+  static void addBranches(Collection<String> downstreamBranches) {
+    TaskTrace trace = current.get();
+    if (trace != null) {
+      trace.task.addBranches(downstreamBranches);
+    }
+  }
+
+  @Override
+  public void close() {
+    if (parent != null) {
+      current.set(parent);
+    } else {
+      current.remove();
+    }
+    traceContext.close();
+    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    if (thresholdMillis > 0 && elapsedMillis >= thresholdMillis) {
+      Map<String, Long> stepMillis = new LinkedHashMap<>();
+      stepNanos.forEach(
+          (name, nanos) -> stepMillis.put(name, TimeUnit.NANOSECONDS.toMillis(nanos)));
+      logger.atWarning().log(
+          "Slow automerger task %s: %s of change %s took %d ms, steps in ms: %s",
+          task.id,
+          task.eventType,
+          task.changeNumber,
+          elapsedMillis,
+          Joiner.on(", ").withKeyValueSeparator("=").join(stepMillis));
+    }
+  }
+
+  /** A timed step of a task. */
+  static class Step implements AutoCloseable {
+    private final TaskTrace trace;
+    private final String name;
+    private final String parentStep;
+    private final TraceTimer timer;
+    private final long startNanos = System.nanoTime();
+
+    private Step(TaskTrace trace, String name) {
+      this.trace = trace;
+      this.name = name;
+      this.parentStep = trace != null ? trace.task.getStep() : null;
+      this.timer = TraceContext.newTimer("automerger " + name, Metadata.empty());
+      if (trace != null) {
+        trace.task.setStep(name);
+      }
+    }
+
+    @Override
+    public void close() {
+      timer.close();
+      if (trace != null) {
+        trace.stepNanos.merge(name, System.nanoTime() - startNanos, Long::sum);
+        trace.task.setStep(parentStep);
+      }
+    }
+  }
+}
@@ -0,0 +1,65 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.automerger;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Strings;
+import com.google.gerrit.common.data.GlobalCapability;
+import com.google.gerrit.extensions.annotations.RequiresCapability;
+import com.google.gerrit.sshd.CommandMetaData;
+import com.google.gerrit.sshd.SshCommand;
+import com.google.inject.Inject;
+import org.kohsuke.args4j.Option;
+
+/** Lists the automerger tasks that are queued or running, or cancels one of them. */
+@RequiresCapability(GlobalCapability.ADMINISTRATE_SERVER)
+@CommandMetaData(name = "tasks", description = "List or cancel queued and running automerger tasks")
+class TasksCommand extends SshCommand {
+
+  @Option(name = "--cancel", metaVar = "ID", usage = "id of the task to cancel")
+  private String cancel;
+
+  private final TaskRegistry taskRegistry;
+  private final ListTasks listTasks;
+
+  @Inject
+  TasksCommand(TaskRegistry taskRegistry, ListTasks listTasks) {
+    this.taskRegistry = taskRegistry;
+    this.listTasks = listTasks;
+  }
+
+  @Override
+  protected void run() throws UnloggedFailure {
+    if (cancel != null) {
+      if (!taskRegistry.cancel(cancel)) {
+        throw die("No automerger task " + cancel);
+      }
+      return;
+    }
+    String format = "%-36s %-9s %-8s %-16s %6s %-26s %s\n";
+    stdout.format(format, "Id", "State", "Change", "Event", "Age", "Step", "Branches");
+    for (ListTasks.TaskInfo task : listTasks.getTasks()) {
+      stdout.format(
+          format,
+          task.id,
+          task.state,
+          task.changeNumber,
+          task.eventType,
+          task.ageSeconds + "s",
+          Strings.nullToEmpty(task.step),
+          Joiner.on(',').join(task.branches));
+    }
+  }
+}
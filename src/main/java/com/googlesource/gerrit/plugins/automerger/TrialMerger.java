@@ -0,0 +1,95 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.automerger;
+
+import com.google.common.base.Joiner;
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.entities.RefNames;
+import com.google.gerrit.extensions.restapi.MergeConflictException;
+import com.google.gerrit.server.git.GitRepositoryManager;
+import com.google.gerrit.server.git.InMemoryInserter;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.merge.MergeStrategy;
+import org.eclipse.jgit.merge.Merger;
+import org.eclipse.jgit.merge.ResolveMerger;
+
+/**
+ * TrialMerger merges an upstream commit into a downstream base in memory, so that conflicts are
+ * found before automerger creates or updates anything.
+ *
+ * <p>The merge uses the same recursive strategy Gerrit uses to create the downstream merge, but
+ * nothing it produces is written to the repository. A trial merge that cannot run is not treated
+ * as a conflict; the downstream change is then created as usual and Gerrit decides.
+ */
+@Singleton
+public class TrialMerger {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  private final GitRepositoryManager repoManager;
+
+  @Inject
+  public TrialMerger(GitRepositoryManager repoManager) {
+    this.repoManager = repoManager;
+  }
+
+  /**
+   * Check that the upstream revision merges cleanly into the downstream base.
+   *
+   * @param project Project of the upstream and downstream changes.
+   * @param downstreamBranch Branch the downstream change targets.
+   * @param baseRevision Revision of the downstream change to base on, or null to merge into the tip
+   *     of the downstream branch.
+   * @param upstreamRevision Revision to merge.
+   * @throws MergeConflictException if the merge conflicts.
+   */
+  public void checkMergeable(
+      String project, String downstreamBranch, String baseRevision, String upstreamRevision)
+      throws MergeConflictException {
+    try (Repository repo = repoManager.openRepository(Project.nameKey(project));
+        ObjectInserter inserter = new InMemoryInserter(repo)) {
+      ObjectId base;
+      if (baseRevision != null) {
+        base = ObjectId.fromString(baseRevision);
+      } else {
+        Ref tip = repo.exactRef(RefNames.fullName(downstreamBranch));
+        if (tip == null) {
+          return;
+        }
+        base = tip.getObjectId();
+      }
+      Merger merger = MergeStrategy.RECURSIVE.newMerger(inserter, repo.getConfig());
+      if (merger.merge(base, ObjectId.fromString(upstreamRevision))) {
+        return;
+      }
+      String conflicts =
+          merger instanceof ResolveMerger
+              ? Joiner.on('\n').join(((ResolveMerger) merger).getUnmergedPaths())
+              : "";
+      logger.atFine().log(
+          "Trial merge of %s into %s conflicts", upstreamRevision, downstreamBranch);
+      throw new MergeConflictException("Trial merge conflict(s):\n" + conflicts);
+    } catch (IOException | IllegalArgumentException e) {
+      logger.atWarning().withCause(e).log(
+          "Unable to trial merge %s into %s", upstreamRevision, downstreamBranch);
+    }
+  }
+}
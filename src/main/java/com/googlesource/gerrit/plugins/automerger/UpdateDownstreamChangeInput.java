@@ -7,6 +7,7 @@ public class UpdateDownstreamChangeInput {
   public int downstreamChangeNumber;
   public int upstreamChangeNumber;
   public int patchSetNumber;
+  public String project;
   public String downstreamBranch;
   public String topic;
   public boolean doChange;
@@ -0,0 +1,56 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.automerger;
+
+import com.google.gerrit.extensions.common.ChangeInfo;
+import com.google.gerrit.extensions.common.RevisionInfo;
+
+/**
+ * Class to hold an upstream revision together with the change and patch set it belongs to, so that
+ * candidate downstream changes can be checked against it without further lookups.
+ */
+public class UpstreamRevision {
+  public final String revision;
+  public final int changeNumber;
+  public final int patchsetNumber;
+
+  public UpstreamRevision(String revision, int changeNumber, int patchsetNumber) {
+    this.revision = revision;
+    this.changeNumber = changeNumber;
+    this.patchsetNumber = patchsetNumber;
+  }
+
+  /**
+   * Resolve the current revision of a change that was fetched with at least CURRENT_REVISION.
+   *
+   * @param change Change to take the current revision from.
+   * @return The current revision of the change, or null if it was fetched without revisions.
+   */
+  public static UpstreamRevision fromChange(ChangeInfo change) {
+    if (change.currentRevision == null || change.revisions == null) {
+      return null;
+    }
+    RevisionInfo revision = change.revisions.get(change.currentRevision);
+    if (revision == null) {
+      return null;
+    }
+    return new UpstreamRevision(change.currentRevision, change._number, revision._number);
+  }
+
+  @Override
+  public String toString() {
+    return revision + " (" + changeNumber + "," + patchsetNumber + ")";
+  }
+}
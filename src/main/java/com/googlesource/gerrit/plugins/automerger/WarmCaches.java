@@ -0,0 +1,54 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.automerger;
+
+import com.google.gerrit.common.data.GlobalCapability;
+import com.google.gerrit.extensions.annotations.RequiresCapability;
+import com.google.gerrit.extensions.restapi.Response;
+import com.google.gerrit.extensions.restapi.RestApiException;
+import com.google.gerrit.extensions.restapi.RestModifyView;
+import com.google.gerrit.server.config.ConfigResource;
+import com.google.inject.Inject;
+
+/** Warms the caches of the plugin that can be filled ahead of events. */
+@RequiresCapability(GlobalCapability.ADMINISTRATE_SERVER)
+class WarmCaches implements RestModifyView<ConfigResource, WarmCaches.Input> {
+  static final int DEFAULT_LIMIT = 1000;
+
+  private final AutomergerCaches caches;
+
+  @Inject
+  public WarmCaches(AutomergerCaches caches) {
+    this.caches = caches;
+  }
+
+  /**
+   * Warm the caches.
+   *
+   * @param input Maximum number of open changes to fetch.
+   * @return The number of changes fetched.
+   * @throws RestApiException
+   */
+  @Override
+  public Response<Integer> apply(ConfigResource configResource, Input input)
+      throws RestApiException {
+    int limit = input != null && input.limit != null ? input.limit : DEFAULT_LIMIT;
+    return Response.ok(caches.warm(limit));
+  }
+
+  static class Input {
+    Integer limit;
+  }
+}
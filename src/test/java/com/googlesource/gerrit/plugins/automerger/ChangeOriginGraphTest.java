@@ -0,0 +1,109 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.automerger;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.extensions.common.ChangeInfo;
+import com.google.gerrit.extensions.common.CommitInfo;
+import com.google.gerrit.extensions.common.RevisionInfo;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ChangeOriginGraphTest {
+
+  @Test
+  public void mergeCascadeTest() throws Exception {
+    ChangeInfo origin = change(1, "aaaa", 1);
+    ChangeInfo dsOne = change(2, "bbbb", 1, "base1", "aaaa");
+    ChangeInfo dsTwo = change(3, "cccc", 1, "base2", "bbbb");
+    ChangeOriginGraph graph = new ChangeOriginGraph(ImmutableList.of(dsTwo, origin, dsOne));
+
+    assertThat(graph.getOriginalChange(3, "cccc", ChangeMode.MERGE)._number).isEqualTo(1);
+    assertThat(graph.getOriginalChange(2, "bbbb", ChangeMode.MERGE)._number).isEqualTo(1);
+    assertThat(graph.getOriginalChange(1, "aaaa", ChangeMode.MERGE)._number).isEqualTo(1);
+  }
+
+  @Test
+  public void mergeUpstreamNotInTopicTest() throws Exception {
+    ChangeInfo dsOne = change(2, "bbbb", 1, "base1", "aaaa");
+    ChangeOriginGraph graph = new ChangeOriginGraph(ImmutableList.of(dsOne));
+
+    assertThat(graph.getOriginalChange(2, "bbbb", ChangeMode.MERGE)._number).isEqualTo(2);
+  }
+
+  @Test
+  public void cherryPickCascadeTest() throws Exception {
+    ChangeInfo origin = change(1, "aaaa", 3);
+    ChangeInfo dsOne = cherryPick(change(2, "bbbb", 1, "base1"), 1, 3);
+    ChangeInfo dsTwo = cherryPick(change(3, "cccc", 1, "base2"), 2, 1);
+    ChangeOriginGraph graph = new ChangeOriginGraph(ImmutableList.of(dsTwo, dsOne, origin));
+
+    assertThat(graph.getOriginalChange(3, "cccc", ChangeMode.CHERRY_PICK)._number).isEqualTo(1);
+  }
+
+  @Test
+  public void cherryPickOfOutdatedPatchSetTest() throws Exception {
+    ChangeInfo origin = change(1, "aaaa", 4);
+    ChangeInfo dsOne = cherryPick(change(2, "bbbb", 1, "base1"), 1, 3);
+    ChangeOriginGraph graph = new ChangeOriginGraph(ImmutableList.of(dsOne, origin));
+
+    assertThat(graph.getOriginalChange(2, "bbbb", ChangeMode.CHERRY_PICK)._number).isEqualTo(2);
+  }
+
+  @Test
+  public void cycleTest() throws Exception {
+    ChangeInfo first = change(1, "aaaa", 1, "base1", "bbbb");
+    ChangeInfo second = change(2, "bbbb", 1, "base2", "aaaa");
+    ChangeOriginGraph graph = new ChangeOriginGraph(ImmutableList.of(first, second));
+
+    assertThat(graph.getOriginalChange(1, "aaaa", ChangeMode.MERGE)._number).isEqualTo(2);
+  }
+
+  private static ChangeInfo change(
+      int number, String revision, int patchsetNumber, String... parents) {
+    List<CommitInfo> parentCommits = new ArrayList<>();
+    for (String parent : parents) {
+      CommitInfo parentCommit = new CommitInfo();
+      parentCommit.commit = parent;
+      parentCommits.add(parentCommit);
+    }
+    CommitInfo commit = new CommitInfo();
+    commit.commit = revision;
+    commit.parents = parentCommits;
+    RevisionInfo revisionInfo = new RevisionInfo();
+    revisionInfo._number = patchsetNumber;
+    revisionInfo.commit = commit;
+
+    ChangeInfo change = new ChangeInfo();
+    change._number = number;
+    change.currentRevision = revision;
+    change.revisions = new HashMap<>();
+    change.revisions.put(revision, revisionInfo);
+    return change;
+  }
+
+  private static ChangeInfo cherryPick(ChangeInfo change, int ofChange, int ofPatchSet) {
+    change.cherryPickOfChange = ofChange;
+    change.cherryPickOfPatchSet = ofPatchSet;
+    return change;
+  }
+}
@@ -42,6 +42,7 @@ import com.google.gerrit.acceptance.testsuite.project.ProjectOperations;
 import com.google.gerrit.common.Nullable;
 import com.google.gerrit.entities.AccountGroup;
 import com.google.gerrit.entities.BranchNameKey;
+import com.google.gerrit.entities.Change;
 import com.google.gerrit.entities.Permission;
 import com.google.gerrit.entities.Project;
 import com.google.gerrit.entities.RefNames;
@@ -55,6 +56,7 @@ import com.google.gerrit.extensions.common.ChangeInfo;
 import com.google.gerrit.extensions.common.ChangeMessageInfo;
 import com.google.gerrit.extensions.restapi.AuthException;
 import com.google.gerrit.extensions.restapi.BinaryResult;
+import com.google.gerrit.extensions.restapi.MergeConflictException;
 import com.google.gerrit.extensions.restapi.RestApiException;
 import com.google.gerrit.server.group.SystemGroupBackend;
 import com.google.gerrit.testing.ConfigSuite;
@@ -70,6 +72,10 @@ import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
 import org.eclipse.jgit.junit.TestRepository;
 import org.eclipse.jgit.lib.Config;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
 import org.junit.Test;
 
 @TestPlugin(
@@ -278,7 +284,10 @@ public class DownstreamCreatorIT extends LightweightPluginDaemonTest {
     // Project name is scoped by test, so we need to get it from our initial change
     String projectName = result.getChange().project().get();
     createBranch(BranchNameKey.create(projectName, "ds_one"));
-    pushSimpleConfig("automerger.config", manifestNameKey.get(), projectName, "ds_one", changeMode);
+    List<ConfigOption> options = new ArrayList<>();
+    options.add(new ConfigOption("global", null, "tagCreatedChanges", "false"));
+    pushSimpleConfig(
+        "automerger.config", manifestNameKey.get(), projectName, "ds_one", changeMode, options);
     // After we upload our config, we upload a new patchset to create the downstreams
     amendChange(result.getChangeId());
     result.assertOkStatus();
@@ -302,6 +311,9 @@ public class DownstreamCreatorIT extends LightweightPluginDaemonTest {
     assertThat(bPrime.branch).isEqualTo("ds_one");
     String bPrimeFirstParent = getParent(bPrime, 0);
     assertThat(aPrime.currentRevision).isEqualTo(bPrimeFirstParent);
+    // Created changes are not tagged with global.tagCreatedChanges turned off
+    assertNoAutomergerChangeCreatedMessage(aPrime.id);
+    assertNoAutomergerChangeCreatedMessage(bPrime.id);
 
     // Change A
     ChangeInfo a = sortedChanges.get(2);
@@ -522,6 +534,42 @@ public class DownstreamCreatorIT extends LightweightPluginDaemonTest {
         .isEqualTo("[autocherry] " + masterSubject + " am: " + shortMasterSha);
   }
 
+  @Test
+  public void testSkipHashtagsBatchedCherryPickMode() throws Exception {
+    Project.NameKey manifestNameKey = defaultSetup();
+    // Create initial change
+    PushOneCommit.Result result =
+        createChange(
+            testRepo, "master", "DO NOT MERGE subject", "filename", "content", "testtopic");
+    // Project name is scoped by test, so we need to get it from our initial change
+    String projectName = result.getChange().project().get();
+    createBranch(BranchNameKey.create(projectName, "ds_one"));
+    createBranch(BranchNameKey.create(projectName, "ds_two"));
+    // Skip both downstream branches
+    List<ConfigOption> options = new ArrayList<>();
+    options.add(new ConfigOption("automerger", "master:ds_two", "mergeAll", "false"));
+    pushDefaultConfig(
+        "automerger.config", manifestNameKey.get(), projectName, "ds_one", "ds_two",
+        ChangeMode.CHERRY_PICK, options);
+    // After we upload our config, we upload a new patchset to skip the downstreams
+    amendChange(result.getChangeId(), "DO NOT MERGE subject", "filename", "content");
+    ChangeApi change = gApi.changes().id(result.getChangeId());
+    assertThat(change.getHashtags()).containsExactly("am_skip_ds_one", "am_skip_ds_two");
+    assertThat(gApi.changes().query("topic: " + change.topic()).get()).hasSize(1);
+    // Both hashtags are added in a single update
+    assertThat(countHashtagUpdates(result.getChangeId())).isEqualTo(1);
+
+    // Skipping again does not update hashtags that are already set
+    amendChange(result.getChangeId(), "DO NOT MERGE subject", "filename", "content");
+    assertThat(countHashtagUpdates(result.getChangeId())).isEqualTo(1);
+
+    // No longer skipping removes both hashtags in a single update
+    amendChange(result.getChangeId(), "subject", "filename", "content");
+    assertThat(change.getHashtags()).isEmpty();
+    assertThat(countHashtagUpdates(result.getChangeId())).isEqualTo(2);
+    assertThat(gApi.changes().query("topic: " + change.topic()).get()).hasSize(3);
+  }
+
   @Test
   public void testAlwaysBlankMerge() throws Exception {
     Project.NameKey manifestNameKey = defaultSetup();
@@ -685,6 +733,234 @@ public class DownstreamCreatorIT extends LightweightPluginDaemonTest {
     downstreamMergeConflict(ChangeMode.CHERRY_PICK);
   }
 
+  private void trialMergeConflict(ChangeMode changeMode) throws Exception {
+    Project.NameKey manifestNameKey = defaultSetup();
+    ObjectId initial = repo().exactRef("HEAD").getLeaf().getObjectId();
+    // Create initial change
+    PushOneCommit.Result result = createChange("subject", "filename", "echo Hello");
+    // Project name is scoped by test, so we need to get it from our initial change
+    String projectName = result.getChange().project().get();
+    createBranch(BranchNameKey.create(projectName, "ds_one"));
+    createBranch(BranchNameKey.create(projectName, "ds_two"));
+    result.assertOkStatus();
+    merge(result);
+    // Reset to create a sibling
+    testRepo.reset(initial);
+    // Set up a merge conflict between master and ds_one
+    PushOneCommit.Result ds1Result =
+        createChange(
+            testRepo, "ds_one", "subject", "filename", "echo \"Hello asdfsd World\"", "randtopic");
+    ds1Result.assertOkStatus();
+    merge(ds1Result);
+    // Reset to allow our merge conflict to come
+    testRepo.reset(initial);
+    List<ConfigOption> options = new ArrayList<>();
+    options.add(new ConfigOption("global", null, "trialMerge", "true"));
+    options.add(new ConfigOption("global", null, "conflictMessage", "${branch}: ${conflict}"));
+    pushDefaultConfig(
+        "automerger.config", manifestNameKey.get(), projectName, "ds_one", "ds_two", changeMode,
+        options);
+    // After we upload our config, we upload a new change to create the downstreams
+    PushOneCommit.Result masterResult =
+        pushFactory
+            .create(admin.newIdent(), testRepo, "subject", "filename", "echo 'Hello World!'")
+            .to("refs/for/master");
+    masterResult.assertOkStatus();
+
+    // The conflict is reported on the upstream change
+    ChangeInfo masterChangeInfo =
+        gApi.changes().id(masterResult.getChangeId()).get(CURRENT_REVISION, MESSAGES);
+    assertCodeReview(masterChangeInfo.id, -2, "autogenerated:MergeConflict");
+    String conflictMessage = getLastMessage(masterResult.getChangeId()).message;
+    assertThat(conflictMessage).contains("ds_one: ");
+    if (changeMode == ChangeMode.MERGE) {
+      // Only the trial merge reports its conflict this way, Gerrit's own merge does not
+      assertThat(conflictMessage).contains("ds_one: Trial merge conflict(s):\nfilename");
+    } else {
+      assertThat(conflictMessage).doesNotContain("Trial merge");
+    }
+
+    // No downstream change was created on ds_one, not even one that was abandoned afterwards
+    assertThat(
+            gApi.changes().query("project:" + projectName + " branch:ds_one status:open").get())
+        .isEmpty();
+    assertThat(
+            gApi.changes()
+                .query("project:" + projectName + " branch:ds_one status:abandoned")
+                .get())
+        .isEmpty();
+
+    // The branch without conflict still gets its downstream change
+    List<ChangeInfo> changesInTopic =
+        gApi.changes()
+            .query("topic: " + masterChangeInfo.topic)
+            .withOptions(CURRENT_REVISION, CURRENT_COMMIT)
+            .get();
+    assertThat(changesInTopic).hasSize(2);
+    ChangeInfo dsTwoChangeInfo = sortedChanges(changesInTopic).get(0);
+    assertThat(dsTwoChangeInfo.branch).isEqualTo("ds_two");
+    assertThat(getUpstreamRevision(dsTwoChangeInfo, changeMode))
+        .isEqualTo(masterChangeInfo.currentRevision);
+  }
+
+  @Test
+  public void testTrialMergeConflict() throws Exception {
+    trialMergeConflict(ChangeMode.MERGE);
+  }
+
+  @Test
+  public void testTrialMergeConflictCherryPickMode() throws Exception {
+    // Cherry-picks are not tried in memory, the option must not change their outcome
+    trialMergeConflict(ChangeMode.CHERRY_PICK);
+  }
+
+  @Test
+  public void testTrialMergeConflictOnUpdate() throws Exception {
+    // Cherry-picks are not tried in memory, so there is no cherry-pick variant
+    Project.NameKey manifestNameKey = defaultSetup();
+    ObjectId initial = repo().exactRef("HEAD").getLeaf().getObjectId();
+    // Create initial change
+    PushOneCommit.Result result = createChange("subject", "filename", "echo Hello");
+    // Project name is scoped by test, so we need to get it from our initial change
+    String projectName = result.getChange().project().get();
+    createBranch(BranchNameKey.create(projectName, "ds_one"));
+    createBranch(BranchNameKey.create(projectName, "ds_two"));
+    result.assertOkStatus();
+    merge(result);
+    testRepo.reset(initial);
+    List<ConfigOption> options = new ArrayList<>();
+    options.add(new ConfigOption("global", null, "trialMerge", "true"));
+    options.add(new ConfigOption("global", null, "conflictMessage", "${branch}: ${conflict}"));
+    pushDefaultConfig(
+        "automerger.config", manifestNameKey.get(), projectName, "ds_one", "ds_two",
+        ChangeMode.MERGE, options);
+    // The first patch set merges cleanly into both downstream branches
+    PushOneCommit.Result masterResult =
+        pushFactory
+            .create(admin.newIdent(), testRepo, "subject", "filename", "echo 'Hello World!'")
+            .to("refs/for/master");
+    masterResult.assertOkStatus();
+    String changeId = masterResult.getChangeId();
+    String topic = gApi.changes().id(changeId).topic();
+    List<ChangeInfo> downstreams =
+        sortedChanges(gApi.changes().query("topic: " + topic + " -branch:master").get());
+    assertThat(downstreams).hasSize(2);
+    ChangeInfo dsOneChange = downstreams.get(0);
+    ChangeInfo dsTwoChange = downstreams.get(1);
+    assertThat(dsOneChange.branch).isEqualTo("ds_one");
+
+    // ds_one moves on so that the next patch set conflicts with it
+    PushOneCommit.Result ds1Result =
+        createChange(
+            testRepo, "ds_one", "subject", "filename", "echo \"Hello asdfsd World\"", "randtopic");
+    ds1Result.assertOkStatus();
+    merge(ds1Result);
+    testRepo.reset(initial);
+    amendChange(changeId, "subject", "filename", "echo 'Hello World!!'");
+    String secondRevision = gApi.changes().id(changeId).get(CURRENT_REVISION).currentRevision;
+
+    // The conflict is found by the trial merge, before a patch set is added to the downstream
+    assertCodeReview(changeId, -2, "autogenerated:MergeConflict");
+    assertThat(getLastMessage(changeId).message)
+        .contains("ds_one: Trial merge conflict(s):\nfilename");
+    ChangeInfo dsOneAfter = gApi.changes().id(dsOneChange._number).get(ALL_REVISIONS);
+    assertThat(dsOneAfter.revisions).hasSize(1);
+    // The downstream of the previous patch set is abandoned, as without a trial merge
+    assertThat(dsOneAfter.status).isEqualTo(ChangeStatus.ABANDONED);
+
+    // The branch without conflict gets the new patch set on its existing downstream change
+    ChangeInfo dsTwoAfter =
+        gApi.changes().id(dsTwoChange._number).get(CURRENT_REVISION, CURRENT_COMMIT);
+    assertThat(dsTwoAfter.status).isEqualTo(ChangeStatus.NEW);
+    assertThat(getUpstreamRevision(dsTwoAfter, ChangeMode.MERGE)).isEqualTo(secondRevision);
+  }
+
+  private void conflictMemo(ChangeMode changeMode) throws Exception {
+    Project.NameKey manifestNameKey = defaultSetup();
+    ObjectId initial = repo().exactRef("HEAD").getLeaf().getObjectId();
+    // Create initial change
+    PushOneCommit.Result result = createChange("subject", "filename", "echo Hello");
+    // Project name is scoped by test, so we need to get it from our initial change
+    String projectName = result.getChange().project().get();
+    createBranch(BranchNameKey.create(projectName, "ds_one"));
+    createBranch(BranchNameKey.create(projectName, "ds_two"));
+    result.assertOkStatus();
+    merge(result);
+    // Reset to create a sibling
+    testRepo.reset(initial);
+    // Set up a merge conflict between master and ds_one
+    PushOneCommit.Result ds1Result =
+        createChange(
+            testRepo, "ds_one", "subject", "filename", "echo \"Hello asdfsd World\"", "randtopic");
+    ds1Result.assertOkStatus();
+    merge(ds1Result);
+    // Reset to allow our merge conflict to come
+    testRepo.reset(initial);
+    List<ConfigOption> options = new ArrayList<>();
+    options.add(new ConfigOption("global", null, "conflictMessage", "${branch}: ${conflict}"));
+    pushDefaultConfig(
+        "automerger.config", manifestNameKey.get(), projectName, "ds_one", "ds_two", changeMode,
+        options);
+    PushOneCommit.Result masterResult =
+        pushFactory
+            .create(admin.newIdent(), testRepo, "subject", "filename", "echo 'Hello World!'")
+            .to("refs/for/master");
+    masterResult.assertOkStatus();
+    String changeId = masterResult.getChangeId();
+
+    // The conflict is remembered for the upstream revision and the tip of ds_one
+    ConflictMemo memo = plugin.getSysInjector().getInstance(ConflictMemo.class);
+    String firstRevision = gApi.changes().id(changeId).get(CURRENT_REVISION).currentRevision;
+    String dsOneTip = gApi.projects().name(projectName).branch("ds_one").get().revision;
+    assertThrows(MergeConflictException.class, () -> memo.check(firstRevision, dsOneTip));
+
+    // Automerging the same pair again fails with the remembered conflict, without merging
+    memo.put(firstRevision, dsOneTip, "remembered conflict");
+    gApi.changes().id(changeId).abandon();
+    gApi.changes().id(changeId).restore();
+    assertThat(getLastMessage(changeId).message).contains("ds_one: remembered conflict");
+
+    // A new upstream revision is merged again
+    amendChange(changeId);
+    String secondRevision = gApi.changes().id(changeId).get(CURRENT_REVISION).currentRevision;
+    assertThat(secondRevision).isNotEqualTo(firstRevision);
+    assertThat(getLastMessage(changeId).message).contains("ds_one: ");
+    assertThat(getLastMessage(changeId).message).doesNotContain("remembered conflict");
+
+    // Once ds_one moves, the same upstream revision is merged again, and now merges cleanly
+    memo.put(secondRevision, dsOneTip, "remembered conflict");
+    testRepo.reset(ds1Result.getCommit());
+    PushOneCommit.Result resolution =
+        pushFactory
+            .create(admin.newIdent(), testRepo, "resolve", "filename", "")
+            .rm("refs/for/ds_one");
+    resolution.assertOkStatus();
+    merge(resolution);
+    assertThat(gApi.projects().name(projectName).branch("ds_one").get().revision)
+        .isNotEqualTo(dsOneTip);
+    gApi.changes().id(changeId).abandon();
+    gApi.changes().id(changeId).restore();
+    List<ChangeInfo> dsOneChanges =
+        gApi.changes()
+            .query(
+                "topic: "
+                    + gApi.changes().id(changeId).topic()
+                    + " branch:ds_one status:open")
+            .get();
+    assertThat(dsOneChanges).hasSize(1);
+    assertThat(getLastMessage(changeId).message).doesNotContain("remembered conflict");
+  }
+
+  @Test
+  public void testConflictMemo() throws Exception {
+    conflictMemo(ChangeMode.MERGE);
+  }
+
+  @Test
+  public void testConflictMemoCherryPickMode() throws Exception {
+    conflictMemo(ChangeMode.CHERRY_PICK);
+  }
+
   private void restrictedVotePermissions(ChangeMode changeMode) throws Exception {
     Project.NameKey manifestNameKey = defaultSetup();
     ObjectId initial = repo().exactRef("HEAD").getLeaf().getObjectId();
@@ -806,6 +1082,72 @@ public class DownstreamCreatorIT extends LightweightPluginDaemonTest {
     topicEditedListener(ChangeMode.CHERRY_PICK);
   }
 
+  private void topicEditedListener_onlyOwnDownstreams(ChangeMode changeMode) throws Exception {
+    Project.NameKey manifestNameKey = defaultSetup();
+    ObjectId initial = repo().exactRef("HEAD").getLeaf().getObjectId();
+    // Create initial change
+    PushOneCommit.Result result =
+        createChange(testRepo, "master", "subject", "filename", "content", "testtopic");
+    // Project name is scoped by test, so we need to get it from our initial change
+    String projectName = result.getChange().project().get();
+    createBranch(BranchNameKey.create(projectName, "ds_one"));
+    createBranch(BranchNameKey.create(projectName, "ds_two"));
+    pushDefaultConfig("automerger.config", manifestNameKey.get(), projectName, "ds_one", "ds_two", changeMode);
+    // After we upload our config, we upload a new patchset to create the downstreams
+    amendChange(result.getChangeId());
+    result.assertOkStatus();
+    // A sibling change in the same topic, whose downstreams must keep the topic
+    testRepo.reset(initial);
+    PushOneCommit.Result sibling =
+        createChange(testRepo, "master", "sibling", "filename2", "content2", "testtopic");
+    sibling.assertOkStatus();
+    String oldTopic = gApi.changes().id(result.getChangeId()).topic();
+    List<ChangeInfo> changesInTopic = gApi.changes().query("topic:\"" + oldTopic + "\"").get();
+    assertThat(changesInTopic).hasSize(6);
+
+    // One downstream already has the new topic, as if an earlier rename was interrupted
+    String newTopic = name("renamed");
+    String upstreamRevision =
+        gApi.changes().id(result.getChangeId()).get(CURRENT_REVISION).currentRevision;
+    ChangeInfo dsOneChangeInfo =
+        gApi.changes()
+            .query("topic:\"" + oldTopic + "\" branch:ds_one")
+            .withOptions(CURRENT_REVISION, CURRENT_COMMIT)
+            .get()
+            .stream()
+            .filter(c -> getUpstreamRevision(c, changeMode).equals(upstreamRevision))
+            .findFirst()
+            .get();
+    gApi.changes().id(dsOneChangeInfo._number).topic(newTopic);
+
+    gApi.changes().id(result.getChangeId()).topic(newTopic);
+    List<ChangeInfo> renamed = gApi.changes().query("topic:\"" + newTopic + "\"").get();
+    assertThat(renamed).hasSize(3);
+    assertThat(renamed.stream().map(c -> c.branch).collect(toImmutableList()))
+        .containsExactly("master", "ds_one", "ds_two");
+    assertThat(
+            renamed.stream()
+                .filter(c -> c.branch.equals("master"))
+                .findFirst()
+                .get()
+                ._number)
+        .isEqualTo(result.getChange().getId().get());
+    List<ChangeInfo> notRenamed = gApi.changes().query("topic:\"" + oldTopic + "\"").get();
+    assertThat(notRenamed).hasSize(3);
+    assertThat(notRenamed.stream().map(c -> c.branch).collect(toImmutableList()))
+        .containsExactly("master", "ds_one", "ds_two");
+  }
+
+  @Test
+  public void testTopicEditedListener_onlyOwnDownstreams() throws Exception {
+    topicEditedListener_onlyOwnDownstreams(ChangeMode.MERGE);
+  }
+
+  @Test
+  public void testTopicEditedListener_onlyOwnDownstreamsCherryPickMode() throws Exception {
+    topicEditedListener_onlyOwnDownstreams(ChangeMode.CHERRY_PICK);
+  }
+
   private void topicEditedListener_withBraces(ChangeMode changeMode) throws Exception {
     Project.NameKey manifestNameKey = defaultSetup();
     // Create initial change
@@ -1256,6 +1598,65 @@ public class DownstreamCreatorIT extends LightweightPluginDaemonTest {
     abandon(ChangeMode.CHERRY_PICK);
   }
 
+  private void abandonManyDownstreams(ChangeMode changeMode) throws Exception {
+    Project.NameKey manifestNameKey = defaultSetup();
+    ObjectId initial = repo().exactRef("HEAD").getLeaf().getObjectId();
+    // Create initial change
+    PushOneCommit.Result result =
+        createChange(testRepo, "master", "subject", "filename", "content", "testtopic");
+    // Project name is scoped by test, so we need to get it from our initial change
+    String projectName = result.getChange().project().get();
+    // More downstream branches than changes abandoned at the same time
+    ImmutableList<String> downstreamBranches =
+        ImmutableList.of("ds_one", "ds_two", "ds_three", "ds_four", "ds_five", "ds_six");
+    List<ConfigOption> options = new ArrayList<>();
+    options.add(new ConfigOption("global", null, "manifestProject", manifestNameKey.get()));
+    options.add(new ConfigOption("global", null, "cherryPickMode", cherryPickMode(changeMode)));
+    for (String downstreamBranch : downstreamBranches) {
+      createBranch(BranchNameKey.create(projectName, downstreamBranch));
+      options.add(
+          new ConfigOption("automerger", "master:" + downstreamBranch, "setProjects", projectName));
+    }
+    pushConfig(options, "automerger.config");
+    // After we upload our config, we upload a new patchset to create the downstreams
+    amendChange(result.getChangeId());
+    // A sibling change in the same topic, whose downstreams must be left alone
+    testRepo.reset(initial);
+    PushOneCommit.Result sibling =
+        createChange(testRepo, "master", "sibling", "filename2", "content2", "testtopic");
+    sibling.assertOkStatus();
+    String topic = gApi.changes().id(result.getChangeId()).topic();
+    assertThat(gApi.changes().query("topic: " + topic + " status:open").get()).hasSize(14);
+
+    // Abandoning one upstream change abandons its downstreams on all branches
+    gApi.changes().id(result.getChangeId()).abandon();
+    List<ChangeInfo> openChanges =
+        gApi.changes()
+            .query("topic: " + topic + " status:open")
+            .withOptions(CURRENT_REVISION, CURRENT_COMMIT)
+            .get();
+    assertThat(openChanges).hasSize(7);
+    for (ChangeInfo openChange : openChanges) {
+      if (openChange.branch.equals("master")) {
+        assertThat(openChange._number).isEqualTo(sibling.getChange().getId().get());
+      } else {
+        assertThat(getUpstreamRevision(openChange, changeMode))
+            .isEqualTo(sibling.getCommit().name());
+      }
+    }
+    assertThat(gApi.changes().query("topic: " + topic + " status:abandoned").get()).hasSize(7);
+  }
+
+  @Test
+  public void testAbandonManyDownstreams() throws Exception {
+    abandonManyDownstreams(ChangeMode.MERGE);
+  }
+
+  @Test
+  public void testAbandonManyDownstreamsCherryPickMode() throws Exception {
+    abandonManyDownstreams(ChangeMode.CHERRY_PICK);
+  }
+
   private void multiAmend(ChangeMode changeMode) throws Exception {
     Project.NameKey manifestNameKey = defaultSetup();
     // Create initial change
@@ -1314,6 +1715,136 @@ public class DownstreamCreatorIT extends LightweightPluginDaemonTest {
     multiAmend(ChangeMode.CHERRY_PICK);
   }
 
+  private void cascadeInProcess(ChangeMode changeMode) throws Exception {
+    Project.NameKey manifestNameKey = defaultSetup();
+    // Create initial change
+    PushOneCommit.Result result =
+        createChange(testRepo, "master", "subject", "filename", "content", "testtopic");
+    // Project name is scoped by test, so we need to get it from our initial change
+    String projectName = result.getChange().project().get();
+    createBranch(BranchNameKey.create(projectName, "ds_one"));
+    createBranch(BranchNameKey.create(projectName, "ds_two"));
+    createBranch(BranchNameKey.create(projectName, "ds_three"));
+    List<ConfigOption> options = new ArrayList<>();
+    options.add(new ConfigOption("global", null, "cascadeInProcess", "true"));
+    pushFourInChainConfig(
+        "automerger.config", manifestNameKey.get(), projectName, changeMode, options);
+    // After we upload our config, we upload a new patchset to create the downstreams
+    amendChange(result.getChangeId());
+    result.assertOkStatus();
+    // The task of the master change creates the whole chain
+    List<ChangeInfo> changesInTopic =
+        gApi.changes()
+            .query("topic: " + gApi.changes().id(result.getChangeId()).topic())
+            .withOptions(CURRENT_REVISION, CURRENT_COMMIT)
+            .get();
+    assertThat(changesInTopic).hasSize(4);
+    List<ChangeInfo> sortedChanges = sortedChanges(changesInTopic);
+    ChangeInfo dsOneChangeInfo = sortedChanges.get(0);
+    assertThat(dsOneChangeInfo.branch).isEqualTo("ds_one");
+    ChangeInfo dsTwoChangeInfo = sortedChanges.get(1);
+    assertThat(dsTwoChangeInfo.branch).isEqualTo("ds_two");
+    ChangeInfo dsThreeChangeInfo = sortedChanges.get(2);
+    assertThat(dsThreeChangeInfo.branch).isEqualTo("ds_three");
+    ChangeInfo masterChangeInfo = sortedChanges.get(3);
+    assertThat(masterChangeInfo.branch).isEqualTo("master");
+
+    // Every hop is created from the current revision of the hop before it
+    assertThat(getUpstreamRevision(dsOneChangeInfo, changeMode))
+        .isEqualTo(masterChangeInfo.currentRevision);
+    assertThat(getUpstreamRevision(dsTwoChangeInfo, changeMode))
+        .isEqualTo(dsOneChangeInfo.currentRevision);
+    assertThat(getUpstreamRevision(dsThreeChangeInfo, changeMode))
+        .isEqualTo(dsTwoChangeInfo.currentRevision);
+
+    // Amending the master change cascades again without leaving stale changes open
+    amendChange(result.getChangeId());
+    changesInTopic =
+        gApi.changes()
+            .query("topic: " + gApi.changes().id(result.getChangeId()).topic() + " status:open")
+            .withOptions(CURRENT_REVISION, CURRENT_COMMIT)
+            .get();
+    assertThat(changesInTopic).hasSize(4);
+    sortedChanges = sortedChanges(changesInTopic);
+    assertThat(getUpstreamRevision(sortedChanges.get(2), changeMode))
+        .isEqualTo(sortedChanges.get(1).currentRevision);
+
+    // +2 and submit
+    merge(result);
+    assertCodeReview(sortedChanges.get(2).id, 2, "autogenerated:Automerger");
+  }
+
+  @Test
+  public void testCascadeInProcess() throws Exception {
+    cascadeInProcess(ChangeMode.MERGE);
+  }
+
+  @Test
+  public void testCascadeInProcessCherryPickMode() throws Exception {
+    cascadeInProcess(ChangeMode.CHERRY_PICK);
+  }
+
+  @Test
+  public void testCherryPickUpdateInPlace() throws Exception {
+    Project.NameKey manifestNameKey = defaultSetup();
+    // Create initial change
+    PushOneCommit.Result result =
+        createChange(testRepo, "master", "subject", "filename", "content", "testtopic");
+    // Project name is scoped by test, so we need to get it from our initial change
+    String projectName = result.getChange().project().get();
+    createBranch(BranchNameKey.create(projectName, "ds_one"));
+    createBranch(BranchNameKey.create(projectName, "ds_two"));
+    List<ConfigOption> options = new ArrayList<>();
+    options.add(new ConfigOption("global", null, "cherryPickUpdateInPlace", "true"));
+    pushDefaultConfig(
+        "automerger.config", manifestNameKey.get(), projectName, "ds_one", "ds_two",
+        ChangeMode.CHERRY_PICK, options);
+    // After we upload our config, we upload a new patchset to create the downstreams
+    amendChange(result.getChangeId());
+    String topic = gApi.changes().id(result.getChangeId()).topic();
+    List<ChangeInfo> sortedChanges =
+        sortedChanges(gApi.changes().query("topic: " + topic).withOption(CURRENT_REVISION).get());
+    assertThat(sortedChanges).hasSize(3);
+    ChangeInfo dsOneChangeInfo = sortedChanges.get(0);
+    ChangeInfo dsTwoChangeInfo = sortedChanges.get(1);
+    ChangeInfo masterChangeInfo = sortedChanges.get(2);
+
+    // A new upstream patch set becomes a new patch set of the same downstream changes
+    amendChange(result.getChangeId());
+    assertThat(gApi.changes().query("topic: " + topic + " status:abandoned").get()).isEmpty();
+    for (ChangeInfo downstream : ImmutableList.of(dsOneChangeInfo, dsTwoChangeInfo)) {
+      ChangeInfo updated = gApi.changes().id(downstream._number).get(ALL_REVISIONS);
+      assertThat(updated.status).isEqualTo(ChangeStatus.NEW);
+      assertThat(updated.revisions).hasSize(2);
+      assertThat(updated.cherryPickOfChange).isEqualTo(masterChangeInfo._number);
+      assertThat(updated.cherryPickOfPatchSet).isEqualTo(3);
+    }
+
+    // An abandoned downstream change is restored and updated in place too
+    gApi.changes().id(dsOneChangeInfo._number).abandon();
+    amendChange(result.getChangeId());
+    ChangeInfo restored = gApi.changes().id(dsOneChangeInfo._number).get(ALL_REVISIONS);
+    assertThat(restored.status).isEqualTo(ChangeStatus.NEW);
+    assertThat(restored.revisions).hasSize(3);
+    assertThat(restored.cherryPickOfPatchSet).isEqualTo(4);
+
+    // A skipped cherry-pick falls back to abandoning the downstream change
+    amendChange(result.getChangeId(), "DO NOT MERGE subject", "filename", "content");
+    assertThat(gApi.changes().id(dsOneChangeInfo._number).get().status)
+        .isEqualTo(ChangeStatus.ABANDONED);
+    assertThat(gApi.changes().id(result.getChangeId()).getHashtags())
+        .contains("am_skip_ds_one");
+    // ds_two is marked with mergeAll: true, so it is still updated in place
+    ChangeInfo dsTwoUpdated = gApi.changes().id(dsTwoChangeInfo._number).get();
+    assertThat(dsTwoUpdated.status).isEqualTo(ChangeStatus.NEW);
+    assertThat(dsTwoUpdated.cherryPickOfPatchSet).isEqualTo(5);
+    assertThat(
+            gApi.changes()
+                .query("topic: " + topic + " branch:ds_two status:open")
+                .get())
+        .hasSize(1);
+  }
+
   private void conflictFourInChainAtTail(ChangeMode changeMode) throws Exception {
     Project.NameKey manifestNameKey = defaultSetup();
     ObjectId initial = repo().exactRef("HEAD").getLeaf().getObjectId();
@@ -1416,7 +1947,17 @@ public class DownstreamCreatorIT extends LightweightPluginDaemonTest {
 
   private void pushSimpleConfig(
       String resourceName, String manifestName, String project, String branch1, ChangeMode changeMode) throws Exception {
-    List<ConfigOption> options = new ArrayList<>();
+    pushSimpleConfig(resourceName, manifestName, project, branch1, changeMode, new ArrayList<>());
+  }
+
+  private void pushSimpleConfig(
+      String resourceName,
+      String manifestName,
+      String project,
+      String branch1,
+      ChangeMode changeMode,
+      List<ConfigOption> options)
+      throws Exception {
     options.add(new ConfigOption("global", null, "manifestProject", manifestName));
     options.add(new ConfigOption("global", null, "cherryPickMode", cherryPickMode(changeMode)));
     options.add(new ConfigOption("automerger", "master:" + branch1, "setProjects", project));
@@ -1426,7 +1967,19 @@ public class DownstreamCreatorIT extends LightweightPluginDaemonTest {
   private void pushDefaultConfig(
       String resourceName, String manifestName, String project, String branch1, String branch2, ChangeMode changeMode)
       throws Exception {
-    List<ConfigOption> options = new ArrayList<>();
+    pushDefaultConfig(
+        resourceName, manifestName, project, branch1, branch2, changeMode, new ArrayList<>());
+  }
+
+  private void pushDefaultConfig(
+      String resourceName,
+      String manifestName,
+      String project,
+      String branch1,
+      String branch2,
+      ChangeMode changeMode,
+      List<ConfigOption> options)
+      throws Exception {
     options.add(new ConfigOption("global", null, "manifestProject", manifestName));
     options.add(new ConfigOption("global", null, "cherryPickMode", cherryPickMode(changeMode)));
     options.add(new ConfigOption("automerger", "master:" + branch1, "setProjects", project));
@@ -1459,7 +2012,16 @@ public class DownstreamCreatorIT extends LightweightPluginDaemonTest {
   private void pushFourInChainConfig(
       String resourceName, String manifestName, String project, ChangeMode changeMode)
       throws Exception {
-    List<ConfigOption> options = new ArrayList<>();
+    pushFourInChainConfig(resourceName, manifestName, project, changeMode, new ArrayList<>());
+  }
+
+  private void pushFourInChainConfig(
+      String resourceName,
+      String manifestName,
+      String project,
+      ChangeMode changeMode,
+      List<ConfigOption> options)
+      throws Exception {
     options.add(new ConfigOption("global", null, "manifestProject", manifestName));
     options.add(new ConfigOption("global", null, "cherryPickMode", cherryPickMode(changeMode)));
     options.add(new ConfigOption("automerger", "master:" + "ds_one", "setProjects", project));
@@ -1495,6 +2057,28 @@ public class DownstreamCreatorIT extends LightweightPluginDaemonTest {
     assertThat(message.tag).isEqualTo("autogenerated:Automerger");
   }
 
+  private void assertNoAutomergerChangeCreatedMessage(String id) throws RestApiException {
+    for (ChangeMessageInfo message : gApi.changes().id(id).messages()) {
+      assertThat(message.message).doesNotContain("Automerger change created!");
+    }
+  }
+
+  private int countHashtagUpdates(String id) throws Exception {
+    ChangeInfo info = gApi.changes().id(id).get();
+    int count = 0;
+    try (Repository repo = repoManager.openRepository(Project.nameKey(info.project));
+        RevWalk rw = new RevWalk(repo)) {
+      Ref metaRef = repo.exactRef(RefNames.changeMetaRef(Change.id(info._number)));
+      rw.markStart(rw.parseCommit(metaRef.getObjectId()));
+      for (RevCommit commit : rw) {
+        if (commit.getFullMessage().contains("\nHashtags:")) {
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
   private ChangeMessageInfo getLastMessage(String id) throws RestApiException {
     List<ChangeMessageInfo> messages = gApi.changes().id(id).messages();
     assertThat(messages).isNotEmpty();
@@ -1510,6 +2094,13 @@ public class DownstreamCreatorIT extends LightweightPluginDaemonTest {
   public String getParent(ChangeInfo info, int number) {
     return info.revisions.get(info.currentRevision).commit.parents.get(number).commit;
   }
+  private String getUpstreamRevision(ChangeInfo info, ChangeMode changeMode) {
+    if (changeMode == ChangeMode.CHERRY_PICK) {
+      return getCherryPickFrom(info);
+    }
+    return getParent(info, 1);
+  }
+
   private String getCherryPickFrom(ChangeInfo info){
     try {
       return gApi.changes().id(info.cherryPickOfChange).get().currentRevision;
@@ -22,9 +22,11 @@ import com.google.gerrit.acceptance.GitUtil;
 import com.google.gerrit.acceptance.LightweightPluginDaemonTest;
 import com.google.gerrit.acceptance.PushOneCommit;
 import com.google.gerrit.acceptance.TestPlugin;
+import com.google.gerrit.acceptance.config.GerritConfig;
 import com.google.gerrit.entities.BranchNameKey;
 import com.google.gerrit.entities.RefNames;
 import com.google.gerrit.extensions.api.changes.HashtagsInput;
+import com.google.gerrit.extensions.client.ChangeStatus;
 import com.google.gerrit.extensions.client.ListChangesOption;
 import com.google.gerrit.extensions.common.ChangeInfo;
 import com.google.gerrit.extensions.restapi.ResourceConflictException;
@@ -87,6 +89,34 @@ public class MergeValidatorIT extends LightweightPluginDaemonTest {
     merge(result);
   }
 
+  @Test
+  @GerritConfig(name = "change.submitWholeTopic", value = "true")
+  public void testNoMissingDownstreamMerges_wholeTopic() throws Exception {
+    // Create initial change
+    PushOneCommit.Result result =
+        createChange(testRepo, "master", "subject", "filename", "content", "testtopic");
+    // Project name is scoped by test, so we need to get it from our initial change
+    String projectName = result.getChange().change().getProject().get();
+    createBranch(BranchNameKey.create(projectName, "ds_one"));
+    pushConfig("automerger.config", projectName, "ds_one");
+    // After we upload our config, we upload a new patchset to create the downstreams
+    amendChange(result.getChangeId());
+    result.assertOkStatus();
+    // Stack a second change in the same topic on top of it
+    PushOneCommit.Result otherResult =
+        createChange(testRepo, "master", "other subject", "otherfile", "content", "testtopic");
+    otherResult.assertOkStatus();
+
+    // Submitting one change submits the whole topic, including the downstreams, so all of them
+    // are validated as part of the same submission
+    for (ChangeInfo change : gApi.changes().query("topic:testtopic").get()) {
+      approve(String.valueOf(change._number));
+    }
+    merge(otherResult);
+    assertThat(gApi.changes().id(result.getChangeId()).get().status)
+        .isEqualTo(ChangeStatus.MERGED);
+  }
+
   @Test
   public void testNoMissingDownstreamMerges_abandonedDownstream() throws Exception {
     // Create initial change
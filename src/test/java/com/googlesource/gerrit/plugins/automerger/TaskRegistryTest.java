@@ -0,0 +1,64 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.automerger;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.testing.GerritJUnit.assertThrows;
+
+import java.util.function.BooleanSupplier;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TaskRegistryTest {
+
+  @Test
+  public void cancelQueuedTaskTest() throws Exception {
+    TaskRegistry registry = new TaskRegistry();
+    TaskRegistry.Task task = registry.register("revision_created", 1);
+    assertThat(registry.list()).containsExactly(task);
+
+    assertThat(registry.cancel(task.id)).isTrue();
+    assertThat(registry.started(task)).isFalse();
+    assertThat(registry.list()).isEmpty();
+  }
+
+  @Test
+  public void cancelRunningTaskStopsAtNextStepTest() throws Exception {
+    TaskRegistry registry = new TaskRegistry();
+    TaskRegistry.Task task = registry.register("revision_created", 1);
+    assertThat(registry.started(task)).isTrue();
+    try (TaskTrace trace = TaskTrace.start(task, 0)) {
+      BooleanSupplier cancelled = TaskTrace.cancellation();
+      try (TaskTrace.Step step = TaskTrace.step("create")) {
+        registry.cancel(task.id);
+        // The step in progress is not interrupted.
+        assertThat(Thread.currentThread().isInterrupted()).isFalse();
+        assertThat(cancelled.getAsBoolean()).isTrue();
+      }
+      assertThrows(TaskCancelledException.class, () -> TaskTrace.step("review"));
+    } finally {
+      registry.finished(task);
+    }
+    assertThat(registry.list()).isEmpty();
+  }
+
+  @Test
+  public void unknownTaskTest() throws Exception {
+    TaskRegistry registry = new TaskRegistry();
+    assertThat(registry.cancel("unknown")).isFalse();
+  }
+}